@@ -0,0 +1,123 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH before/after benchmark of the obstacle lookup used by Grid.getValidMoves.
+ * The linearValidMoves benchmark is the original linear scan over the obstacle list,
+ * gridValidMoves is the bitset-backed Grid. Obstacles are placed with a fixed seed,
+ * so every run measures the same grids, and the setup checks that both agree.
+ *
+ * Run from the pathfinder directory:
+ *   mvn -B test-compile exec:exec -Djmh.args="GridBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+
+    private static final long SEED = 42L;
+    private static final int QUERIES = 1 << 16; // Precomputed query cells, a power of two
+
+    @Param({"200"})
+    int n;
+    @Param({"200"})
+    int m;
+    // Fraction of the cells that are obstacles
+    @Param({"0.0", "0.01", "0.05", "0.10", "0.25", "0.50"})
+    double density;
+
+    private int[][] obs;
+    private Grid grid;
+    private int[] xs, ys;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(SEED);
+        obs = new int[(int) (density * n * m)][2];
+        for (int[] obstacle : obs) {
+            obstacle[0] = r.nextInt(n) + 1;
+            obstacle[1] = r.nextInt(m) + 1;
+        }
+        grid = new Grid(1, 1, n, m, n, m, new int[0][], obs);
+
+        xs = new int[QUERIES];
+        ys = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            xs[i] = r.nextInt(n) + 1;
+            ys[i] = r.nextInt(m) + 1;
+            if (linearValidMoves(obs, n, m, xs[i], ys[i]).size() != grid.getValidMoves(xs[i], ys[i]).size()) {
+                throw new IllegalStateException("Bitset and linear scan disagree at density " + density);
+            }
+        }
+    }
+
+    /**
+     * Reference implementation: the valid moves computed by scanning every obstacle.
+     */
+    private static ArrayList<int[]> linearValidMoves(int[][] obs, int n, int m, int x, int y) {
+        ArrayList<int[]> validMoves = new ArrayList<>();
+
+        if (x > 1 && !linearIsObstacle(obs, x - 1, y)) {
+            validMoves.add(new int[] {x - 1, y});
+        }
+        if (x < n && !linearIsObstacle(obs, x + 1, y)) {
+            validMoves.add(new int[] {x + 1, y});
+        }
+        if (y > 1 && !linearIsObstacle(obs, x, y - 1)) {
+            validMoves.add(new int[] {x, y - 1});
+        }
+        if (y < m && !linearIsObstacle(obs, x, y + 1)) {
+            validMoves.add(new int[] {x, y + 1});
+        }
+        return validMoves;
+    }
+
+    private static boolean linearIsObstacle(int[][] obs, int x, int y) {
+        for (int[] obstacle : obs) {
+            if (obstacle[0] == x && obstacle[1] == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public int linearValidMoves() {
+        int i = next = (next + 1) & (QUERIES - 1);
+        return linearValidMoves(obs, n, m, xs[i], ys[i]).size();
+    }
+
+    @Benchmark
+    public int gridValidMoves() {
+        int i = next = (next + 1) & (QUERIES - 1);
+        return grid.getValidMoves(xs[i], ys[i]).size();
+    }
+}
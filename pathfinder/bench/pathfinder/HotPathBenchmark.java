@@ -0,0 +1,299 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH microbenchmarks of the simulation hot paths: grid queries, comfort arithmetic,
+ * individual moves and reproductions, epidemics and PEC event dispatch. Every fixture is built from a fixed
+ * seed, so successive runs measure the same work and can be compared for regressions.
+ *
+ * Run from the pathfinder directory:
+ *   mvn -B test-compile exec:exec -Djmh.args="HotPathBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    private static final long SEED = 42L;
+    private static final int N = 200, M = 200; // Grid size
+    private static final double OBSTACLE_DENSITY = 0.1;
+    private static final int QUERIES = 1 << 16; // Precomputed query coordinates, a power of two
+
+    /**
+     * Builds the benchmark grid: random obstacles and cost zones around an open start cell.
+     *
+     * @param random Random source
+     * @return The grid
+     */
+    static Grid grid(SplittableRandom random) {
+        int[][] obs = new int[(int) (OBSTACLE_DENSITY * N * M)][2];
+        for (int[] obstacle : obs) {
+            do {
+                obstacle[0] = random.nextInt(N) + 1;
+                obstacle[1] = random.nextInt(M) + 1;
+            } while (obstacle[0] <= 2 && obstacle[1] <= 2);
+        }
+        int[][] scz = new int[20][5];
+        for (int[] zone : scz) {
+            zone[0] = random.nextInt(N) + 1;
+            zone[1] = random.nextInt(M) + 1;
+            zone[2] = random.nextInt(N) + 1;
+            zone[3] = random.nextInt(M) + 1;
+            zone[4] = random.nextInt(10) + 1;
+        }
+        return new Grid(1, 1, N, M, N, M, scz, obs);
+    }
+
+    /**
+     * Builds a population of individuals that have each walked a number of random moves,
+     * so their paths and comforts vary.
+     *
+     * @param grid   The grid
+     * @param size   Number of individuals
+     * @param vmax   Maximum population size
+     * @param moves  Moves walked by each individual
+     * @param random Random source of the population
+     * @return The population
+     */
+    static Population population(Grid grid, int size, int vmax, int moves, SplittableRandom random) {
+        Population population = new Population(vmax, 3, 20, 1, 1);
+        population.setRandom(random);
+        for (int i = 0; i < size; i++) {
+            Individual individual = new Individual(population, grid);
+            for (int j = 0; j < moves; j++) {
+                individual.move();
+            }
+            population.addIndividual(individual);
+        }
+        return population;
+    }
+
+    /**
+     * The grid and precomputed query cells, directions and comforts, cycled through by the queries.
+     */
+    @State(Scope.Thread)
+    public static class Queries {
+        Grid grid;
+        int[] xs, ys, dirs;
+        double[] comforts;
+        int next;
+
+        @Setup
+        public void setup() {
+            SplittableRandom random = new SplittableRandom(SEED);
+            grid = grid(random.split());
+            xs = new int[QUERIES];
+            ys = new int[QUERIES];
+            dirs = new int[QUERIES];
+            comforts = new double[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                xs[i] = random.nextInt(N) + 1;
+                ys[i] = random.nextInt(M) + 1;
+                dirs[i] = random.nextInt(4);
+                comforts[i] = random.nextDouble(Double.MIN_NORMAL, 1);
+            }
+        }
+
+        /**
+         * Moves on to the next query.
+         *
+         * @return Index of the query
+         */
+        int next() {
+            return next = (next + 1) & (QUERIES - 1);
+        }
+    }
+
+    /**
+     * A single individual walking the grid.
+     */
+    @State(Scope.Thread)
+    public static class Walker {
+        Individual walker;
+
+        @Setup
+        public void setup() {
+            SplittableRandom random = new SplittableRandom(SEED);
+            Grid grid = grid(random.split());
+            Population population = population(grid, 0, 1000, 0, random.split());
+            walker = new Individual(population, grid);
+            population.addIndividual(walker);
+        }
+    }
+
+    /**
+     * A parent that has walked 500 moves, whose children are removed as soon as they are born.
+     */
+    @State(Scope.Thread)
+    public static class Parent {
+        Population population;
+        Individual parent;
+
+        @Setup
+        public void setup() {
+            SplittableRandom random = new SplittableRandom(SEED);
+            Grid grid = grid(random.split());
+            population = population(grid, 1, 1000, 500, random.split());
+            parent = population.getIndividual(0);
+        }
+    }
+
+    /**
+     * A population refilled with copies of a fixed set of individuals until it exceeds vmax,
+     * which runs one epidemic.
+     */
+    @State(Scope.Thread)
+    public static class Epidemic {
+        @Param({"1000", "10000"})
+        int vmax;
+
+        Population templates;
+        Population population;
+        int next;
+
+        @Setup
+        public void setup() {
+            SplittableRandom random = new SplittableRandom(SEED);
+            Grid grid = grid(random.split());
+            templates = population(grid, 256, Integer.MAX_VALUE, 200, random.split());
+            population = population(grid, 0, vmax, 0, random.split());
+        }
+    }
+
+    /**
+     * A PEC whose individuals only move, each rescheduling its next move, so the queue size stays constant.
+     */
+    @State(Scope.Thread)
+    public static class Queue {
+        @Param({"HEAP", "CALENDAR", "STORE"})
+        Pec.QueueType type;
+        @Param({"1000", "100000"})
+        int size;
+
+        Pec pec;
+
+        @Setup
+        public void setup() {
+            SplittableRandom random = new SplittableRandom(SEED);
+            Grid grid = grid(random.split());
+            Population population = population(grid, size, Integer.MAX_VALUE, 0, random.split());
+            pec = new Pec(Integer.MAX_VALUE, type);
+            for (int id = 0; id < size; id++) {
+                Individual individual = population.getIndividual(id);
+                pec.schedule(Event.MOVE, individual.getMoveTime() * (1 + random.nextDouble()), individual);
+            }
+        }
+    }
+
+    @Benchmark
+    public int gridGetValidMoves(Queries q) {
+        int i = q.next();
+        return q.grid.getValidMoves(q.xs[i], q.ys[i]).size();
+    }
+
+    @Benchmark
+    public int gridGetMoveMask(Queries q) {
+        int i = q.next();
+        return q.grid.getMoveMask(q.xs[i], q.ys[i]);
+    }
+
+    @Benchmark
+    public int gridGetCost(Queries q) {
+        int i = q.next();
+        int x = q.xs[i], y = q.ys[i];
+        int nx = Math.max(1, Math.min(N, x + Grid.DX[q.dirs[i]]));
+        int ny = Math.max(1, Math.min(M, y + Grid.DY[q.dirs[i]]));
+        return q.grid.getCost(x, y, nx, ny);
+    }
+
+    @Benchmark
+    public double mathLog(Queries q) {
+        return Math.log(q.comforts[q.next()]);
+    }
+
+    @Benchmark
+    public double comfortModelLog(Queries q) {
+        return ComfortModel.log(q.comforts[q.next()]);
+    }
+
+    @Benchmark
+    public double mathPow(Queries q) {
+        return Math.pow(q.comforts[q.next()], 3);
+    }
+
+    @Benchmark
+    public double comfortModelPow(Queries q) {
+        return ComfortModel.pow(q.comforts[q.next()], 3);
+    }
+
+    @Benchmark
+    public int individualMove(Walker w) {
+        w.walker.move();
+        return w.walker.getPath().size();
+    }
+
+    /**
+     * Reproduces the parent and removes the child, so the population keeps its size.
+     */
+    @Benchmark
+    public int individualReproduce(Parent p) {
+        Individual child = p.parent.reproduce();
+        p.population.removeIndividual(child);
+        return child.getId();
+    }
+
+    /**
+     * Reproduces the parent, moves the child once and removes it: the first move of a child
+     * checks its path, shared with the parent, for revisits.
+     */
+    @Benchmark
+    public int individualReproduceAndMove(Parent p) {
+        Individual child = p.parent.reproduce();
+        child.move();
+        p.population.removeIndividual(child);
+        return child.getPath().size();
+    }
+
+    /**
+     * Refills the population until it exceeds vmax, which runs one epidemic.
+     */
+    @Benchmark
+    public int populationEpidemic(Epidemic e) {
+        int size;
+        do {
+            size = e.population.getSize();
+            e.population.addIndividual(e.templates.getIndividual(e.next++ & 255).copyTo(e.population));
+        } while (e.population.getSize() > size);
+        return e.population.getSize();
+    }
+
+    @Benchmark
+    public int pecNext(Queue q) {
+        return q.pec.next();
+    }
+}
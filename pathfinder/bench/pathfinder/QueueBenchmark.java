@@ -0,0 +1,85 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH hold-model benchmark of the PEC event queues, over growing queue sizes.
+ * Each hold dequeues the earliest event and schedules a new one after it, with
+ * the same (1 - log(u)) * rate shape as Individual.getMoveTime, so the queue size
+ * stays constant. The results show where the calendar queue overtakes the heap.
+ *
+ * Run from the pathfinder directory:
+ *   mvn -B test-compile exec:exec -Djmh.args="QueueBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueueBenchmark {
+
+    private static final long SEED = 42L;
+
+    @Param({"HEAP", "CALENDAR"})
+    Pec.QueueType type;
+    // Number of events kept in the queue
+    @Param({"16", "256", "4096", "65536", "1048576"})
+    int size;
+
+    private Random r;
+    private EventQueue queue;
+
+    @Setup
+    public void setup() {
+        r = new Random(SEED);
+        queue = type == Pec.QueueType.CALENDAR ? new CalendarEventQueue() : new HeapEventQueue();
+        for (int i = 0; i < size; i++) {
+            queue.offer(new Death(delay(r), null, null));
+        }
+    }
+
+    /**
+     * Draws an event delay shaped like the individual event times.
+     *
+     * @param r Random source
+     * @return Delay
+     */
+    private static double delay(Random r) {
+        return (1 - Math.log(1 - r.nextDouble())) * 10;
+    }
+
+    /**
+     * Runs a hold operation: dequeues the earliest event and schedules one after it.
+     *
+     * @return The dequeued event
+     */
+    @Benchmark
+    public Event hold() {
+        Event e = queue.poll();
+        queue.offer(new Death(e.getTime() + delay(r), null, null));
+        return e;
+    }
+}
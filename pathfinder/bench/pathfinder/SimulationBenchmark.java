@@ -0,0 +1,109 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH macro benchmark of whole simulations, run with Simulator.run() into an output sink
+ * that discards what it is given, over a sweep of grid sizes, obstacle counts and maximum
+ * population sizes. Scenarios and simulations are seeded, so every run of the benchmark
+ * simulates the same trajectories: each invocation is a simulation with the next seed.
+ *
+ * Run from the pathfinder directory, setting the sweep with JMH's -p option:
+ *   mvn -B test-compile exec:exec -Djmh.args="SimulationBenchmark -p size=50,100 -p vmax=1000"
+ * The workers parameter runs windows of concurrent events, as -w does, to measure their
+ * speedup on a multi-core machine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+
+    private static final long SEED = 42L;
+    private static final int V = 20, K = 1, MU = 10, DELTA = 1, RO = 1;
+
+    // Grid side
+    @Param({"25", "50", "100"})
+    int size;
+    // Obstacles, as a percentage of the cells
+    @Param({"0", "10", "30"})
+    int obstacles;
+    // Maximum population size
+    @Param({"100", "1000"})
+    int vmax;
+    // Simulation time
+    @Param({"200"})
+    int tau;
+    @Param({"HEAP"})
+    Pec.QueueType queue;
+    // Threads running windows of events, 1 to run events one at a time
+    @Param({"1"})
+    int workers;
+
+    private Scenario scenario;
+    private SimulatorOptions options;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[][] obs = new int[size * size * obstacles / 100][2];
+        for (int[] obstacle : obs) {
+            do {
+                obstacle[0] = random.nextInt(size) + 1;
+                obstacle[1] = random.nextInt(size) + 1;
+            } while ((obstacle[0] == 1 && obstacle[1] == 1) || (obstacle[0] == size && obstacle[1] == size));
+        }
+        int[][] scz = new int[size / 10][5];
+        for (int[] zone : scz) {
+            zone[0] = random.nextInt(size) + 1;
+            zone[1] = random.nextInt(size) + 1;
+            zone[2] = random.nextInt(size) + 1;
+            zone[3] = random.nextInt(size) + 1;
+            zone[4] = random.nextInt(10) + 1;
+        }
+        scenario = new Scenario(new Grid(1, 1, size, size, size, size, scz, obs), tau, V, vmax, K, MU, DELTA, RO);
+
+        options = new SimulatorOptions();
+        options.setQueueType(queue);
+        options.setWorkers(workers);
+        options.setSeed(SEED);
+    }
+
+    /**
+     * Runs a whole simulation, with its observations and result written to a sink that discards them.
+     *
+     * @return The number of realized events
+     */
+    @Benchmark
+    public int simulatorRun() {
+        Simulator simulator = new Simulator(scenario, options);
+        simulator.setOutput(OutputSink.Format.TEXT.create(Writer.nullWriter()));
+        simulator.run();
+        return simulator.getResult().getEvents();
+    }
+}
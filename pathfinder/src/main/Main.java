@@ -21,10 +21,29 @@
  */
 package main;
 import java.io.File;
-import java.util.Random;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 
+import pathfinder.BatchRunner;
+import pathfinder.EpidemicPolicy;
+import pathfinder.Grid;
+import pathfinder.IslandModel;
+import pathfinder.OutputSink;
+import pathfinder.Pec;
+import pathfinder.ReplicaRunner;
+import pathfinder.Scenario;
+import pathfinder.ScenarioFormatException;
+import pathfinder.ScenarioLoader;
+import pathfinder.ScenarioWriter;
 import pathfinder.Simulator;
+import pathfinder.SimulatorOptions;
+import pathfinder.SplitMixRandom;
 
 public class Main {
 
@@ -33,10 +52,39 @@ public class Main {
      */
     private static void printHelp()
     {
-        System.out.println("Usage: pathfinder [-r <n> <m> <xi> <yi> <xf> <yf> <n_scz> <n_obs> <tau> <v> <vmax> <k> <mu> <delta> <ro>] | [-f <input_file>]");
+        System.out.println("Usage: pathfinder [-r <n> <m> <xi> <yi> <xf> <yf> <n_scz> <n_obs> <tau> <v> <vmax> <k> <mu> <delta> <ro>] | [-f <input_file>] [options]");
+        System.out.println("       pathfinder -c <input_file> <output_file> [text|binary|raster]");
+        System.out.println("       pathfinder -R <checkpoint_file> [options]");
+        System.out.println("       pathfinder -b <directory|manifest> <results_file> [<threads>[:<memory_mb>]] [options]");
         System.out.println("Options:");
         System.out.println("  -r: Run with random parameters");
-        System.out.println("  -f: Run with parameters from a file");
+        System.out.println("  -f: Run with parameters from a file, in the text or the binary format");
+        System.out.println("  -c: Convert a file to another format (default: binary for a text file, text for a binary one)");
+        System.out.println("      binary: parameters, special cost zones and obstacles");
+        System.out.println("      raster: the same, plus the grid's obstacle and cost indices, so loading skips building them");
+        System.out.println("  -R: Resume a simulation from a checkpoint, from the observation after it; the scenario, queue,");
+        System.out.println("      epidemic policy, threads and random state are the saved ones, only -m, -o and -k apply");
+        System.out.println("  -b: Run every scenario file of a directory, or listed in a manifest one per line, in one process,");
+        System.out.println("      threads at a time (default: one per core), skipping those estimated to need over memory_mb");
+        System.out.println("      megabytes (default: no limit), and write a record per scenario to results_file,");
+        System.out.println("      as JSON Lines if it ends in .json or .jsonl, as CSV otherwise; only -q, -e and -s apply");
+        System.out.println("  -q <heap|calendar|store>: Event queue implementation (default: heap)");
+        System.out.println("  -e <policy>: Epidemic policy (default: exact)");
+        System.out.println("      exact: cull once as soon as the population exceeds vmax");
+        System.out.println("      watermark:<high>:<low>: cull above high*vmax, down to low*vmax");
+        System.out.println("      incremental:<high>:<low>:<chunk>: same, visiting chunk individuals per birth, and all");
+        System.out.println("      at once if the population passes high*vmax again before they have all been visited");
+        System.out.println("  -p <replicas>: Run independent replicas in parallel and report aggregate results (default: 1)");
+        System.out.println("  -i <islands>[:<interval>:<migrants>]: Split the population into islands run in parallel,");
+        System.out.println("      sending migrants fittest individuals to the next island every interval observations (default: 1, interval 2, 2 migrants)");
+        System.out.println("  -w <threads>: Run windows of concurrent events on that many threads, in a single simulation");
+        System.out.println("      (default: 1, one event at a time)");
+        System.out.println("  -s <seed>: Seed of the random grid and of the simulation, for reproducible runs (default: random)");
+        System.out.println("  -m <file>: Record engine metrics, exposed through JMX and written to file at every observation,");
+        System.out.println("      as JSON Lines if file ends in .json or .jsonl, as CSV otherwise (default: disabled)");
+        System.out.println("  -o <text|jsonl|csv>[:<file>]: Output format, written to file or to the standard output (default: text)");
+        System.out.println("  -k <file>[:<observations>]: Write a checkpoint to file every observations observations, replacing");
+        System.out.println("      the previous one, so the simulation can be resumed with -R (default: disabled, every observation)");
         System.out.println("Parameters:");
         System.out.println("  <n>: Grid rows");
         System.out.println("  <m>: Grid columns");
@@ -62,6 +110,287 @@ public class Main {
         System.out.println();
     }
 
+    /**
+     * Reads the engine options from the command-line arguments.
+     *
+     * @param args    Command-line arguments
+     * @param options Options to fill in
+     * @return The remaining arguments, which select the input mode
+     */
+    private static String[] parseOptions(String[] args, SimulatorOptions options)
+    {
+        ArrayList<String> modeArgs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-q":
+                        options.setQueueType(Pec.QueueType.valueOf(args[++i].toUpperCase()));
+                        break;
+                    case "-e":
+                        options.setEpidemicPolicy(EpidemicPolicy.parse(args[++i]));
+                        break;
+                    case "-p":
+                        options.setReplicas(Integer.parseInt(args[++i]));
+                        break;
+                    case "-i":
+                        String[] island = args[++i].split(":");
+                        if (island.length != 1 && island.length != 3) {
+                            throw new IllegalArgumentException("Invalid island model: " + args[i]);
+                        }
+                        options.setIslands(Integer.parseInt(island[0]),
+                                island.length == 3 ? Integer.parseInt(island[1]) : options.getMigrationInterval(),
+                                island.length == 3 ? Integer.parseInt(island[2]) : options.getMigrants());
+                        break;
+                    case "-w":
+                        options.setWorkers(Integer.parseInt(args[++i]));
+                        break;
+                    case "-s":
+                        options.setSeed(Long.parseLong(args[++i]));
+                        break;
+                    case "-m":
+                        options.setMetricsFile(args[++i]);
+                        break;
+                    case "-o":
+                        String[] output = args[++i].split(":", 2);
+                        options.setOutput(OutputSink.Format.valueOf(output[0].toUpperCase()), output.length == 2 ? output[1] : null);
+                        break;
+                    case "-k":
+                        String checkpoint = args[++i];
+                        int colon = checkpoint.lastIndexOf(':');
+                        if (colon < 0) {
+                            options.setCheckpoint(checkpoint, 1);
+                        } else {
+                            options.setCheckpoint(checkpoint.substring(0, colon), Integer.parseInt(checkpoint.substring(colon + 1)));
+                        }
+                        break;
+                    default:
+                        modeArgs.add(args[i]);
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.out.println("Error: Incorrect options");
+            printHelp();
+            System.exit(1);
+        }
+
+        if (options.getReplicas() > 1 && options.getIslands() > 1) {
+            System.out.println("Error: Replicas and islands cannot be combined");
+            printHelp();
+            System.exit(1);
+        }
+
+        if (options.getWorkers() > 1 && (options.getReplicas() > 1 || options.getIslands() > 1)) {
+            System.out.println("Error: Event windows are only run in a single simulation");
+            printHelp();
+            System.exit(1);
+        }
+
+        if (options.getMetricsFile() != null && (options.getReplicas() > 1 || options.getIslands() > 1)) {
+            System.out.println("Error: Metrics are only recorded for a single simulation");
+            printHelp();
+            System.exit(1);
+        }
+
+        if ((options.getOutputFormat() != OutputSink.Format.TEXT || options.getOutputFile() != null)
+                && (options.getReplicas() > 1 || options.getIslands() > 1)) {
+            System.out.println("Error: Output formats are only available for a single simulation");
+            printHelp();
+            System.exit(1);
+        }
+
+        if (options.getCheckpointFile() != null && (options.getReplicas() > 1 || options.getIslands() > 1)) {
+            System.out.println("Error: Checkpoints are only taken of a single simulation");
+            printHelp();
+            System.exit(1);
+        }
+
+        if (modeArgs.isEmpty()) {
+            printHelp();
+            System.exit(1);
+        }
+        return modeArgs.toArray(new String[0]);
+    }
+
+    /**
+     * Opens the writer the output goes to.
+     *
+     * @param file Output file, or null for the standard output
+     * @return The writer, left open on the standard output when closed
+     * @throws IOException if the file cannot be opened
+     */
+    private static Writer openOutput(String file) throws IOException
+    {
+        if (file != null) {
+            return Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+        }
+        return new OutputStreamWriter(System.out) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Converts a scenario file from one format to another, then exits.
+     *
+     * @param args The mode arguments: -c, the input file, the output file and optionally the output format
+     */
+    private static void convert(String[] args)
+    {
+        if (args.length < 3 || args.length > 4) {
+            System.out.println("Error: Incorrect arguments");
+            printHelp();
+            System.exit(1);
+        }
+        if (!new File(args[1]).exists()) {
+            System.out.println("Error: File does not exist");
+            printHelp();
+            System.exit(1);
+        }
+
+        try {
+            String format = args.length == 4 ? args[3] : ScenarioLoader.isBinary(args[1]) ? "text" : "binary";
+            if (!format.equals("text") && !format.equals("binary") && !format.equals("raster")) {
+                System.out.println("Error: Invalid scenario format: " + format);
+                printHelp();
+                System.exit(1);
+            }
+
+            Scenario scenario = ScenarioLoader.load(args[1]);
+            if (format.equals("text")) {
+                ScenarioWriter.writeText(scenario, args[2]);
+            } else {
+                ScenarioWriter.writeBinary(scenario, args[2], format.equals("raster"));
+            }
+        } catch (ScenarioFormatException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.out.println("Error: Unable to convert file");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Resumes a simulation from a checkpoint.
+     *
+     * @param args    The mode arguments: -R and the checkpoint file
+     * @param options Engine options
+     * @return The simulator, in the state of the checkpoint
+     */
+    private static Simulator resume(String[] args, SimulatorOptions options)
+    {
+        if (args.length != 2) {
+            System.out.println("Error: Incorrect arguments");
+            printHelp();
+            System.exit(1);
+        }
+        if (options.getReplicas() > 1 || options.getIslands() > 1) {
+            System.out.println("Error: Only a single simulation can be resumed");
+            printHelp();
+            System.exit(1);
+        }
+        if (!new File(args[1]).exists()) {
+            System.out.println("Error: File does not exist");
+            printHelp();
+            System.exit(1);
+        }
+
+        try {
+            return Simulator.resume(args[1], options);
+        } catch (ScenarioFormatException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.out.println("Error: Unable to read checkpoint");
+            System.exit(1);
+        }
+        return null;
+    }
+
+    /**
+     * Runs a batch of scenario files, writing their results to one file, then exits.
+     *
+     * @param args    The mode arguments: -b, the directory or manifest, the results file,
+     *                and optionally the threads and the memory limit
+     * @param options Engine options, shared by every scenario
+     */
+    private static void batch(String[] args, SimulatorOptions options)
+    {
+        if (args.length < 3 || args.length > 4) {
+            System.out.println("Error: Incorrect arguments");
+            printHelp();
+            System.exit(1);
+        }
+        if (options.getReplicas() > 1 || options.getIslands() > 1 || options.getMetricsFile() != null
+                || options.getOutputFormat() != OutputSink.Format.TEXT || options.getOutputFile() != null
+                || options.getCheckpointFile() != null || options.getWorkers() > 1) {
+            System.out.println("Error: Only -q, -e and -s apply to a batch");
+            printHelp();
+            System.exit(1);
+        }
+        if (!new File(args[1]).exists()) {
+            System.out.println("Error: File does not exist");
+            printHelp();
+            System.exit(1);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        int memoryLimit = 0;
+        BatchRunner runner = null;
+        try {
+            if (args.length == 4) {
+                String[] limits = args[3].split(":");
+                if (limits.length > 2) {
+                    throw new IllegalArgumentException("Invalid batch limits: " + args[3]);
+                }
+                threads = Integer.parseInt(limits[0]);
+                memoryLimit = limits.length == 2 ? Integer.parseInt(limits[1]) : 0;
+            }
+            runner = new BatchRunner(args[1], args[2], threads, memoryLimit, options);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: Incorrect arguments");
+            printHelp();
+            System.exit(1);
+        } catch (IOException e) {
+            System.out.println("Error: Unable to read file");
+            System.exit(1);
+        }
+
+        try {
+            runner.run();
+        } catch (IOException e) {
+            System.out.println("Error: Unable to write results");
+            System.exit(1);
+        }
+        runner.printSummary();
+    }
+
+    /**
+     * Runs a single simulation, writing its output where the options say.
+     *
+     * @param simulator The simulator
+     * @param options   Engine options
+     */
+    private static void run(Simulator simulator, SimulatorOptions options)
+    {
+        try (OutputSink output = options.getOutputFormat().create(openOutput(options.getOutputFile()))) {
+            simulator.setOutput(output);
+            // Print initial configuration
+            simulator.printConfig();
+            // Start the simulation
+            simulator.run();
+        } catch (IOException e) {
+            System.out.println("Error: Unable to write output");
+            System.exit(1);
+        } catch (UncheckedIOException | IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
     /**
      * Main entry point for the Pathfinder program.
      * Parses command-line arguments, initializes simulation parameters (randomly or from file),
@@ -70,12 +399,32 @@ public class Main {
      * @param args Command-line arguments
      */
     public static void main(String[] args) {
-        // Simulation parameters
-        int n = 0, m = 0, xi = 0, yi = 0, xf = 0, yf = 0, n_scz = 0, n_obs = 0, tau = 0, v = 0, k = 0, mu = 0, delta = 0, ro = 0, vmax = 0;
-        int[][] scz = null, obs = null;
+        SimulatorOptions options = new SimulatorOptions();
+        args = parseOptions(args, options);
 
+        // Handle the converter
+        if (args[0].equals("-c")) {
+            convert(args);
+            return;
+        }
+
+        // Handle a batch of scenario files
+        if (args[0].equals("-b")) {
+            batch(args, options);
+            return;
+        }
+
+        // Handle resuming from a checkpoint
+        if (args[0].equals("-R")) {
+            run(resume(args, options), options);
+            return;
+        }
+
+        Scenario scenario = null;
         // Handle random parameter mode
         if (args[0].equals("-r")) {
+            // Simulation parameters
+            int n = 0, m = 0, xi = 0, yi = 0, xf = 0, yf = 0, n_scz = 0, n_obs = 0, tau = 0, v = 0, k = 0, mu = 0, delta = 0, ro = 0, vmax = 0;
             try {
                 n = Integer.parseInt(args[1]);
                 m = Integer.parseInt(args[2]);
@@ -99,22 +448,21 @@ public class Main {
             }
 
             // Create random Special Cost Zones and Obstacles
-            scz = new int[n_scz][5];
-            obs = new int[n_obs][2];
-
-            Random r = new Random();
+            Grid.Builder grid = new Grid.Builder(n, m, xi, yi, xf, yf);
+            SplitMixRandom r = options.splitRandom();
             for (int i = 0; i < n_scz; i++) {
-                scz[i][0] = r.nextInt(m) + 1; // xn
-                scz[i][1] = r.nextInt(n) + 1; // yn
-                scz[i][2] = r.nextInt(m) + 1; // xn'
-                scz[i][3] = r.nextInt(n) + 1; // yn'
-                scz[i][4] = r.nextInt(10) + 1; // cost
+                int x1 = r.nextInt(m) + 1; // xn
+                int y1 = r.nextInt(n) + 1; // yn
+                int x2 = r.nextInt(m) + 1; // xn'
+                int y2 = r.nextInt(n) + 1; // yn'
+                grid.addZone(x1, y1, x2, y2, r.nextInt(10) + 1); // cost
             }
 
             for (int i = 0; i < n_obs; i++) {
-                obs[i][0] = r.nextInt(m) + 1; // x
-                obs[i][1] = r.nextInt(n) + 1; // y
+                int x = r.nextInt(m) + 1; // x
+                grid.addObstacle(x, r.nextInt(n) + 1); // y
             }
+            scenario = new Scenario(grid.build(), tau, v, vmax, k, mu, delta, ro);
         }
         // Handle file input mode
         else if (args[0].equals("-f")) {
@@ -126,46 +474,11 @@ public class Main {
             }
 
             try {
-                Scanner scanner = new Scanner(inputFile);
-                n = scanner.nextInt();
-                m = scanner.nextInt();
-                xi = scanner.nextInt();
-                yi = scanner.nextInt();
-                xf = scanner.nextInt();
-                yf = scanner.nextInt();
-                n_scz = scanner.nextInt();
-                n_obs = scanner.nextInt();
-                tau = scanner.nextInt();
-                v = scanner.nextInt();
-                vmax = scanner.nextInt();
-                k = scanner.nextInt();
-                mu = scanner.nextInt();
-                delta = scanner.nextInt();
-                ro = scanner.nextInt();
-
-                scz = new int[n_scz][5];
-                obs = new int[n_obs][2];
-
-                scanner.nextLine(); // Skip to next line
-                scanner.nextLine(); // Skip to next line
-
-                for (int i = 0; i < n_scz; i++) {
-                    scz[i][0] = scanner.nextInt(); // xn
-                    scz[i][1] = scanner.nextInt(); // yn
-                    scz[i][2] = scanner.nextInt(); // xn'
-                    scz[i][3] = scanner.nextInt(); // yn'
-                    scz[i][4] = scanner.nextInt(); // cost
-                }
-
-                scanner.nextLine(); // Skip to next line
-                scanner.nextLine(); // Skip to next line
-
-                for (int i = 0; i < n_obs; i++) {
-                    obs[i][0] = scanner.nextInt(); // x
-                    obs[i][1] = scanner.nextInt(); // y
-                }
-                scanner.close();
-            } catch (Exception e) {
+                scenario = ScenarioLoader.load(args[1]);
+            } catch (ScenarioFormatException e) {
+                System.out.println("Error: " + e.getMessage());
+                System.exit(1);
+            } catch (IOException e) {
                 System.out.println("Error: Unable to read file");
                 printHelp();
                 System.exit(1);
@@ -177,11 +490,25 @@ public class Main {
             System.exit(1);
         }
 
+        // Run independent replicas and report their aggregate results
+        if (options.getReplicas() > 1) {
+            ReplicaRunner runner = new ReplicaRunner(scenario, options);
+            runner.printConfig();
+            runner.run();
+            runner.printSummary();
+            return;
+        }
+
+        // Run a single simulation split into islands
+        if (options.getIslands() > 1) {
+            IslandModel model = new IslandModel(scenario, options);
+            model.printConfig();
+            model.run();
+            model.printSummary();
+            return;
+        }
+
         // Initialize the simulator with the provided parameters
-        Simulator simulator = new Simulator(n, m, xi, yi, xf, yf, scz, obs, tau, v, vmax, k, mu, delta, ro);
-        // Print initial configuration
-        simulator.printConfig();
-        // Start the simulation
-        simulator.run();
+        run(new Simulator(scenario, options), options);
     }
 }
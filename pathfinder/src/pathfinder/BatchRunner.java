@@ -0,0 +1,437 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a batch of scenario files in one JVM and writes their outcomes to one results file,
+ * so that small scenarios do not each pay for starting and warming up a JVM.
+ *
+ * The scenarios are the regular files of a directory, in name order, or the files listed
+ * in a manifest, one per line, where blank lines and lines starting with '#' are skipped
+ * and relative paths are taken from the manifest's directory. Each scenario is loaded and
+ * simulated by a worker of a fork-join pool, the scenarios being split in halves as the
+ * replicas of ReplicaRunner are, so idle workers steal the pending ones.
+ *
+ * A scenario may be given a memory limit. The JVM cannot cap the heap of a task, so the
+ * footprint of a scenario is estimated from its grid and maximum population before it runs,
+ * and scenarios estimated over the limit are skipped. The estimate is a heuristic, so the
+ * limit is a guide rather than a guarantee. The number of workers is reduced so that all
+ * of them running at the limit fit in the heap, and a scenario running out of memory anyway
+ * is recorded as such without stopping the others.
+ *
+ * The results file has a record per scenario, written as soon as it finishes: CSV with
+ * a header line, or JSON Lines when the file name ends in .json or .jsonl. An error writing
+ * it stops the records, not the scenarios, and is thrown once they have all finished.
+ */
+public class BatchRunner {
+
+    // Estimated bytes of an individual with its comfort model, population slots and three pending events
+    private static final long INDIVIDUAL_BYTES = 512;
+    // Estimated bytes of a cell of a path: its node and its share of the visited cell sets
+    private static final long PATH_CELL_BYTES = 72;
+
+    private final String[] files;
+    private final SimulatorOptions[] options;
+    private final String resultsFile;
+    private final long memoryLimit; // Bytes a scenario may take, 0 for no limit
+    private final int parallelism;
+    private final boolean json;
+    private Writer out;
+    private IOException writeFailure; // First error writing the results file
+    private int succeeded;
+    private int failed;
+    private long wallTime; // Nanoseconds taken by the last run
+
+    /**
+     * Constructs a runner for the scenarios of a directory or a manifest.
+     * Every scenario gets its own options, with the queue and epidemic policy of the given
+     * ones, and a seed drawn from them in scenario order, so with a seed each scenario
+     * follows the same trajectory whatever worker runs it. Scenarios run their events one
+     * at a time, so each takes a single thread of the pool.
+     *
+     * @param source      Directory of scenario files, or manifest listing them
+     * @param resultsFile File the results are written to, replacing any existing one
+     * @param threads     Most scenarios run at once
+     * @param memoryLimit Megabytes a scenario may take, 0 for no limit
+     * @param options     Engine options, shared by every scenario
+     * @throws IOException if the directory or the manifest cannot be read
+     * @throws IllegalArgumentException if the number of threads or the memory limit is invalid,
+     *                                  or the options run event windows
+     */
+    public BatchRunner(String source, String resultsFile, int threads, int memoryLimit, SimulatorOptions options) throws IOException
+    {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        }
+        if (memoryLimit < 0) {
+            throw new IllegalArgumentException("The memory limit cannot be negative");
+        }
+        if (options.getWorkers() > 1) {
+            throw new IllegalArgumentException("Scenarios of a batch run their events one at a time");
+        }
+
+        this.files = listScenarios(source);
+        this.options = new SimulatorOptions[files.length];
+        for (int i = 0; i < files.length; i++) {
+            this.options[i] = options.split();
+        }
+        this.resultsFile = resultsFile;
+        this.memoryLimit = memoryLimit * (1L << 20);
+
+        int workers = Math.min(threads, Math.max(files.length, 1));
+        if (this.memoryLimit > 0) {
+            workers = (int) Math.max(1, Math.min(workers, Runtime.getRuntime().maxMemory() / this.memoryLimit));
+        }
+        this.parallelism = workers;
+
+        String lower = resultsFile.toLowerCase(Locale.ROOT);
+        this.json = lower.endsWith(".json") || lower.endsWith(".jsonl");
+    }
+
+    /**
+     * Lists the scenario files of a directory, in name order, or of a manifest, in listed order.
+     *
+     * @param source Directory or manifest
+     * @return Paths of the scenario files
+     * @throws IOException if the directory or the manifest cannot be read
+     */
+    public static String[] listScenarios(String source) throws IOException
+    {
+        File dir = new File(source);
+        ArrayList<String> files = new ArrayList<>();
+        if (dir.isDirectory()) {
+            File[] entries = dir.listFiles();
+            if (entries == null) {
+                throw new IOException("Unable to list " + source);
+            }
+            Arrays.sort(entries);
+            for (File entry : entries) {
+                if (entry.isFile()) {
+                    files.add(entry.getPath());
+                }
+            }
+            return files.toArray(new String[0]);
+        }
+
+        File base = dir.getAbsoluteFile().getParentFile();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                File file = new File(line);
+                files.add(file.isAbsolute() ? line : new File(base, line).getPath());
+            }
+        }
+        return files.toArray(new String[0]);
+    }
+
+    /**
+     * Estimates the bytes a simulation of a scenario takes: its grid, and a population one above
+     * the high watermark whose individuals each hold a path of their own as long as the grid's
+     * half-perimeter. This is a heuristic, not a bound: a sweep that spares everyone leaves the
+     * population above the watermark, and a path can be as long as the grid has cells, though
+     * paths are usually shorter and share their prefixes. A scenario that runs out of memory
+     * anyway is recorded as such.
+     *
+     * @param scenario The scenario
+     * @param policy   Epidemic policy, which bounds the population
+     * @return The estimated footprint, in bytes
+     */
+    static long estimateFootprint(Scenario scenario, EpidemicPolicy policy)
+    {
+        Grid grid = scenario.getGrid();
+        long cells = (long) grid.getN() * grid.getM();
+        long gridBytes = cells / 8 + (grid.getZoneCount() > 0 ? 2 * cells : 0);
+        long individuals = Math.max(scenario.getV(), policy.getHighWatermark(scenario.getVmax()) + 1L);
+        long pathBytes = PATH_CELL_BYTES * (grid.getN() + grid.getM());
+        return gridBytes + individuals * (INDIVIDUAL_BYTES + pathBytes);
+    }
+
+    /**
+     * Fork-join task running a range of scenarios.
+     */
+    private class ScenarioTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        /**
+         * Constructs a task for the scenarios in [from, to).
+         *
+         * @param from First scenario
+         * @param to   Scenario after the last one
+         */
+        ScenarioTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                runScenario(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScenarioTask(from, mid), new ScenarioTask(mid, to));
+        }
+    }
+
+    /**
+     * Runs every scenario to the end, in parallel, writing the results file.
+     *
+     * @throws IOException if the results file cannot be written
+     */
+    public void run() throws IOException
+    {
+        succeeded = 0;
+        failed = 0;
+        writeFailure = null;
+        long start = System.nanoTime();
+        try (Writer writer = Files.newBufferedWriter(Paths.get(resultsFile), StandardCharsets.UTF_8)) {
+            out = writer;
+            if (!json) {
+                out.write("index,file,status,path_complete,best_path_cost,best_comfort,first_hit_time,events,wall_seconds,best_path,message\n");
+            }
+            if (files.length > 0) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    pool.invoke(new ScenarioTask(0, files.length));
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            if (writeFailure != null) {
+                throw writeFailure;
+            }
+        } finally {
+            out = null;
+        }
+        wallTime = System.nanoTime() - start;
+    }
+
+    /**
+     * Loads and simulates a scenario, and writes its record. A scenario that cannot be
+     * loaded, exceeds the memory limit or fails while running is recorded with the reason,
+     * and the other scenarios go on.
+     *
+     * @param index Index of the scenario
+     */
+    private void runScenario(int index)
+    {
+        long start = System.nanoTime();
+        Scenario scenario = null;
+        SimulationResult result = null;
+        String status = "ok";
+        String message = null;
+        try {
+            scenario = ScenarioLoader.load(files[index]);
+            long footprint = estimateFootprint(scenario, options[index].getEpidemicPolicy());
+            if (memoryLimit > 0 && footprint > memoryLimit) {
+                status = "memory";
+                message = "needs about " + toMegabytes(footprint) + " MB, over the limit of " + toMegabytes(memoryLimit) + " MB";
+            } else {
+                result = new Simulator(scenario, options[index]).simulate();
+            }
+        } catch (ScenarioFormatException e) {
+            status = "invalid";
+            message = e.getMessage();
+        } catch (IOException e) {
+            status = "unreadable";
+            message = "Unable to read file";
+        } catch (OutOfMemoryError e) {
+            scenario = null;
+            status = "memory";
+            message = "ran out of memory";
+        } catch (RuntimeException e) {
+            status = "failed";
+            message = e.toString();
+        }
+        write(index, status, scenario, result, (System.nanoTime() - start) / 1e9, message);
+    }
+
+    /**
+     * Writes the record of a scenario and counts its outcome.
+     *
+     * @param index    Index of the scenario
+     * @param status   ok, or why the scenario has no result
+     * @param scenario The scenario, or null if it could not be loaded
+     * @param result   Outcome of the simulation, or null if it did not run
+     * @param seconds  Wall time taken by the scenario
+     * @param message  Detail of a failure, or null
+     */
+    private synchronized void write(int index, String status, Scenario scenario, SimulationResult result, double seconds, String message)
+    {
+        if (result != null) {
+            succeeded++;
+        } else {
+            failed++;
+        }
+
+        StringBuilder record = new StringBuilder();
+        String wall = String.format(Locale.ROOT, "%.3f", seconds);
+        if (json) {
+            record.append("{\"index\":").append(index)
+                    .append(",\"file\":").append(jsonString(files[index]))
+                    .append(",\"status\":\"").append(status).append('"');
+            if (result != null) {
+                record.append(",\"pathComplete\":").append(result.isPathComplete())
+                        .append(",\"bestPathCost\":").append(result.isPathComplete() ? String.valueOf(result.getBestPathCost()) : "null")
+                        .append(",\"bestComfort\":").append(result.getBestComfort())
+                        .append(",\"firstHitTime\":").append(result.isPathComplete() ? String.valueOf(result.getFirstHitTime()) : "null")
+                        .append(",\"events\":").append(result.getEvents());
+            }
+            record.append(",\"wallSeconds\":").append(wall);
+            if (result != null) {
+                record.append(",\"bestPath\":[");
+                if (result.getBestPath() != null) {
+                    Grid grid = scenario.getGrid();
+                    int[] cells = result.getBestPath().toArray();
+                    for (int i = 0; i < cells.length; i++) {
+                        if (i > 0) record.append(',');
+                        record.append('[').append(grid.getX(cells[i])).append(',').append(grid.getY(cells[i])).append(']');
+                    }
+                }
+                record.append(']');
+            }
+            if (message != null) {
+                record.append(",\"message\":").append(jsonString(message));
+            }
+            record.append("}\n");
+        } else {
+            record.append(index).append(',').append(csvField(files[index])).append(',').append(status).append(',');
+            if (result != null) {
+                record.append(result.isPathComplete()).append(',');
+                if (result.isPathComplete()) record.append(result.getBestPathCost());
+                record.append(',').append(result.getBestComfort()).append(',');
+                if (result.isPathComplete()) record.append(result.getFirstHitTime());
+                record.append(',').append(result.getEvents());
+            } else {
+                record.append(",,,,");
+            }
+            record.append(',').append(wall).append(',');
+            if (result != null && result.getBestPath() != null) {
+                Grid grid = scenario.getGrid();
+                int[] cells = result.getBestPath().toArray();
+                for (int i = 0; i < cells.length; i++) {
+                    if (i > 0) record.append(' ');
+                    record.append(grid.getX(cells[i])).append(':').append(grid.getY(cells[i]));
+                }
+            }
+            record.append(',');
+            if (message != null) record.append(csvField(message));
+            record.append('\n');
+        }
+
+        if (writeFailure != null) return;
+        try {
+            out.write(record.toString());
+            out.flush();
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+    }
+
+    /**
+     * Quotes a CSV field if it holds a separator, a quote or a line break.
+     *
+     * @param value The field
+     * @return The field as written
+     */
+    private static String csvField(String value)
+    {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Writes a string as a JSON string literal.
+     *
+     * @param value The string
+     * @return The quoted and escaped string
+     */
+    private static String jsonString(String value)
+    {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Converts bytes to whole megabytes, rounding up.
+     *
+     * @param bytes The bytes
+     * @return The megabytes
+     */
+    private static long toMegabytes(long bytes)
+    {
+        return (bytes + (1L << 20) - 1) >> 20;
+    }
+
+    /**
+     * Prints the outcome of the last run: how many scenarios ran and failed, and how long it took.
+     */
+    public void printSummary()
+    {
+        double seconds = wallTime / 1e9;
+        String output =
+            "Scenarios:\t\t\t" + files.length + "\n\t\t" +
+                    "Worker threads:\t\t\t" + parallelism + "\n\t\t" +
+                    "Memory limit:\t\t\t" + (memoryLimit > 0 ? toMegabytes(memoryLimit) + " MB per scenario" : "none") + "\n\t\t" +
+                    "Wall time:\t\t\t" + String.format(Locale.ROOT, "%.3f s", seconds) + "\n\t\t" +
+                    "Completed:\t\t\t" + succeeded + " of " + files.length + "\n\t\t" +
+                    "Failed:\t\t\t\t" + failed + "\n\t\t" +
+                    "Results:\t\t\t" + resultsFile + "\n";
+
+        System.out.println(output);
+    }
+
+    /**
+     * Returns a string representation of the runner.
+     *
+     * @return String describing the runner
+     */
+    @Override
+    public String toString()
+    {
+        return "BatchRunner{" +
+                "scenarios=" + files.length +
+                ", resultsFile='" + resultsFile + '\'' +
+                ", memoryLimit=" + memoryLimit +
+                ", parallelism=" + parallelism +
+                ", wallTime=" + wallTime +
+                '}';
+    }
+}
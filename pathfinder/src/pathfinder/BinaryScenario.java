@@ -0,0 +1,377 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads and writes scenarios in the binary format, big-endian:
+ *
+ *   int    magic, "PFSC"
+ *   int    version, VERSION
+ *   int    flags, RASTERIZED if the grid's indices follow the obstacles
+ *   int    n m xi yi xf yf n_scz n_obs tau v vmax k mu delta ro
+ *   int    x1 y1 x2 y2 cost       (n_scz times)
+ *   int    x y                    (n_obs times)
+ * and, if RASTERIZED:
+ *   int    number of cost levels, then the cost of each level
+ *   long   obstacle bitset, one bit per cell, (n * m + 63) / 64 words
+ *   int    number of allocated cost tiles, then the index of each, in increasing order
+ *   char   cost level of each cell of each allocated tile, 64 * 64 per tile, unsigned
+ *
+ * The file is memory-mapped, the header is read in constant time, and each section is
+ * copied into the grid's arrays in bulk, with no parsing. A rasterized file also skips
+ * indexing the obstacles and rasterizing the zones, so it loads in the time it takes to
+ * copy it. It is larger, 8 KiB per 64x64 tile crossed by a zone border, and pays off
+ * when the zones are many and large. Zones with more distinct costs than char levels hold
+ * are stored without the indices, which are then built when the file is loaded.
+ */
+final class BinaryScenario {
+
+    /** First int of every binary scenario file, "PFSC" in ASCII. */
+    static final int MAGIC = 0x50465343;
+    /** Version of the format written, the only one read. */
+    static final int VERSION = 1;
+    /** Flag set when the obstacle bitset and the cost lattice are stored. */
+    static final int RASTERIZED = 1;
+
+    private static final int HEADER_BYTES = 18 * 4;
+    // Size of the mapped window; larger files are mapped one window at a time
+    private static final long WINDOW_SIZE = 1L << 30;
+    // Largest array the loader allocates
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    private final String name;
+    private final FileChannel channel;
+    private final long fileSize; // End of the scenario, the end of the file unless it is embedded
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long offset; // Offset of the next value
+
+    /**
+     * Prepares to read a binary scenario from a range of a file.
+     *
+     * @param name    Name of the file, for errors
+     * @param channel Channel of the file
+     * @param start   Offset of the scenario
+     * @param end     Offset right after the scenario
+     */
+    private BinaryScenario(String name, FileChannel channel, long start, long end) {
+        this.name = name;
+        this.channel = channel;
+        this.fileSize = end;
+        this.offset = start;
+    }
+
+    /**
+     * Checks whether a file starts with the magic number of the binary format.
+     *
+     * @param channel Channel of the file
+     * @return true if the file is a binary scenario
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isBinary(FileChannel channel) throws IOException {
+        return channel.size() >= 4 && channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt(0) == MAGIC;
+    }
+
+    /**
+     * Reads a binary scenario file.
+     *
+     * @param name    Name of the file, for errors
+     * @param channel Channel of the file
+     * @return The scenario
+     * @throws ScenarioFormatException if the file is malformed
+     * @throws IOException if the file cannot be read
+     */
+    static Scenario read(String name, FileChannel channel) throws IOException {
+        return new BinaryScenario(name, channel, 0, channel.size()).read();
+    }
+
+    /**
+     * Reads a binary scenario embedded in another file, such as a checkpoint.
+     *
+     * @param name    Name of the file, for errors
+     * @param channel Channel of the file
+     * @param start   Offset of the scenario
+     * @param length  Length of the scenario, in bytes
+     * @return The scenario
+     * @throws ScenarioFormatException if the scenario is malformed or is not exactly length bytes long
+     * @throws IOException if the file cannot be read
+     */
+    static Scenario read(String name, FileChannel channel, long start, long length) throws IOException {
+        if (start + length > channel.size()) {
+            throw new ScenarioFormatException(name, start, "unexpected end of file, expected a scenario of " + length + " bytes");
+        }
+        return new BinaryScenario(name, channel, start, start + length).read();
+    }
+
+    /**
+     * Computes the length of a scenario written without the grid's indices.
+     *
+     * @param scenario The scenario
+     * @return Its length in the binary format, in bytes
+     */
+    static long size(Scenario scenario) {
+        Grid grid = scenario.getGrid();
+        return HEADER_BYTES + 20L * grid.getZoneCount() + 8L * grid.getObstacleCount();
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @return The scenario
+     * @throws IOException if the file is malformed or cannot be read
+     */
+    private Scenario read() throws IOException {
+        long start = offset;
+        ByteBuffer header = region(HEADER_BYTES, "the header");
+        check(header.getInt(0) == MAGIC, start, "not a binary scenario file");
+        int version = header.getInt(4);
+        check(version == VERSION, start + 4, "unsupported version " + version + ", expected " + VERSION);
+        int flags = header.getInt(8);
+        check((flags & ~RASTERIZED) == 0, start + 8, "unknown flags " + Integer.toHexString(flags));
+
+        int n = header.getInt(12);
+        check(n >= 1, start + 12, "the number of rows must be at least 1");
+        int m = header.getInt(16);
+        check(m >= 1, start + 16, "the number of columns must be at least 1");
+        check((long) n * m <= Integer.MAX_VALUE, start + 16, "a grid of " + n + " x " + m + " cells is too large");
+        int xi = coordinate(header, 20, "the start x-coordinate", n);
+        int yi = coordinate(header, 24, "the start y-coordinate", m);
+        int xf = coordinate(header, 28, "the end x-coordinate", n);
+        int yf = coordinate(header, 32, "the end y-coordinate", m);
+        int zoneCount = header.getInt(36);
+        check(zoneCount >= 0 && 5L * zoneCount <= MAX_ARRAY, start + 36, "invalid number of special cost zones " + zoneCount);
+        int obstacleCount = header.getInt(40);
+        check(obstacleCount >= 0 && 2L * obstacleCount <= MAX_ARRAY, start + 40, "invalid number of obstacles " + obstacleCount);
+        int tau = header.getInt(44), v = header.getInt(48), vmax = header.getInt(52), k = header.getInt(56);
+        int mu = header.getInt(60), delta = header.getInt(64), ro = header.getInt(68);
+        offset = start + HEADER_BYTES;
+
+        Grid.Builder builder = new Grid.Builder(n, m, xi, yi, xf, yf);
+        builder.setZones(readInts(5 * zoneCount, "the special cost zones"), zoneCount);
+        int[] obstacles = readInts(2 * obstacleCount, "the obstacles");
+
+        if ((flags & RASTERIZED) == 0) {
+            builder.setObstacles(obstacles, obstacleCount, null);
+        } else {
+            long levelsOffset = offset;
+            int levelCount = readInt("the number of cost levels");
+            check(levelCount >= 1 && levelCount <= Grid.MAX_COST_LEVELS + 1, levelsOffset, "invalid number of cost levels " + levelCount);
+            int[] costLevels = readInts(levelCount, "the cost levels");
+            check(costLevels[0] == 1, levelsOffset + 4, "the first cost level must be 1");
+
+            long[] bitset = readLongs((int) (((long) n * m + 63) >>> 6), "the obstacle bitset");
+
+            int tileTotal = Grid.getTileRows(n) * Grid.getTileCols(m);
+            long tilesOffset = offset;
+            int tileCount = readInt("the number of cost tiles");
+            check(tileCount >= 0 && tileCount <= tileTotal, tilesOffset, "invalid number of cost tiles " + tileCount);
+            int[] tileIndices = readInts(tileCount, "the cost tile indices");
+            char[][] costTiles = new char[tileTotal][];
+            for (int i = 0; i < tileCount; i++) {
+                if (tileIndices[i] < 0 || tileIndices[i] >= tileTotal || (i > 0 && tileIndices[i] <= tileIndices[i - 1])) {
+                    throw new ScenarioFormatException(name, tilesOffset + 4 + 4L * i, "invalid cost tile index " + tileIndices[i]);
+                }
+            }
+            for (int i = 0; i < tileCount; i++) {
+                long tileOffset = offset;
+                char[] tile = readChars(Grid.getTileSize(), "a cost tile");
+                for (int cell = 0; cell < tile.length; cell++) {
+                    if (tile[cell] >= levelCount) {
+                        throw new ScenarioFormatException(name, tileOffset + 2L * cell, "invalid cost level " + (int) tile[cell]);
+                    }
+                }
+                costTiles[tileIndices[i]] = tile;
+            }
+
+            builder.setObstacles(obstacles, obstacleCount, bitset).setCostLattice(costTiles, costLevels);
+        }
+
+        check(offset == fileSize, offset, "unexpected data after the scenario");
+        return new Scenario(builder.build(), tau, v, vmax, k, mu, delta, ro);
+    }
+
+    /**
+     * Writes a scenario in the binary format.
+     *
+     * @param scenario   The scenario
+     * @param out        The stream the file is written to, big-endian
+     * @param rasterized Whether to store the obstacle bitset and the cost lattice, if the
+     *                   grid's costs are stored as levels
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Scenario scenario, DataOutputStream out, boolean rasterized) throws IOException {
+        Grid grid = scenario.getGrid();
+        rasterized &= grid.getCostTiles() != null;
+        int[] start = grid.getStartCoordinates(), end = grid.getEndCoordinates();
+        int[] header = {MAGIC, VERSION, rasterized ? RASTERIZED : 0, grid.getN(), grid.getM(),
+                start[0], start[1], end[0], end[1], grid.getZoneCount(), grid.getObstacleCount(),
+                scenario.getTau(), scenario.getV(), scenario.getVmax(), scenario.getK(),
+                scenario.getMu(), scenario.getDelta(), scenario.getRo()};
+        for (int value : header) {
+            out.writeInt(value);
+        }
+        for (int zone = 0; zone < grid.getZoneCount(); zone++) {
+            for (int field = 0; field < 5; field++) {
+                out.writeInt(grid.getZoneValue(zone, field));
+            }
+        }
+        for (int i = 0; i < grid.getObstacleCount(); i++) {
+            out.writeInt(grid.getObstacleX(i));
+            out.writeInt(grid.getObstacleY(i));
+        }
+        if (!rasterized) return;
+
+        int[] costLevels = grid.getCostLevels();
+        out.writeInt(costLevels.length);
+        for (int cost : costLevels) {
+            out.writeInt(cost);
+        }
+        for (long word : grid.getObstacleBits()) {
+            out.writeLong(word);
+        }
+        char[][] costTiles = grid.getCostTiles();
+        int tileCount = 0;
+        for (char[] tile : costTiles) {
+            if (tile != null) tileCount++;
+        }
+        out.writeInt(tileCount);
+        for (int i = 0; i < costTiles.length; i++) {
+            if (costTiles[i] != null) out.writeInt(i);
+        }
+        for (char[] tile : costTiles) {
+            if (tile == null) continue;
+            for (char level : tile) {
+                out.writeChar(level);
+            }
+        }
+    }
+
+    /**
+     * Reads a coordinate of the header, which must be inside the grid.
+     *
+     * @param header   The header
+     * @param position Offset of the coordinate
+     * @param what     Description of the value, for errors
+     * @param limit    Largest valid coordinate
+     * @return The coordinate
+     * @throws ScenarioFormatException if the coordinate is outside the grid
+     */
+    private int coordinate(ByteBuffer header, int position, String what, int limit) throws ScenarioFormatException {
+        int value = header.getInt(position);
+        check(value >= 1 && value <= limit, offset + position, what + " " + value + " is outside the grid, 1 to " + limit);
+        return value;
+    }
+
+    /**
+     * Reads an int.
+     *
+     * @param what Description of the value, for errors
+     * @return The value
+     * @throws IOException if the file ends before it or cannot be read
+     */
+    private int readInt(String what) throws IOException {
+        int value = region(4, what).getInt(0);
+        offset += 4;
+        return value;
+    }
+
+    /**
+     * Reads an array of ints in bulk.
+     *
+     * @param count Number of ints
+     * @param what  Description of the values, for errors
+     * @return The values
+     * @throws IOException if the file ends before them or cannot be read
+     */
+    private int[] readInts(int count, String what) throws IOException {
+        check(offset + 4L * count <= fileSize, offset, "unexpected end of file, expected " + what);
+        int[] values = new int[count];
+        for (int done = 0; done < count; ) {
+            int chunk = (int) Math.min(count - done, WINDOW_SIZE / 4);
+            region(4L * chunk, what).asIntBuffer().get(values, done, chunk);
+            offset += 4L * chunk;
+            done += chunk;
+        }
+        return values;
+    }
+
+    /**
+     * Reads an array of longs in bulk.
+     *
+     * @param count Number of longs
+     * @param what  Description of the values, for errors
+     * @return The values
+     * @throws IOException if the file ends before them or cannot be read
+     */
+    private long[] readLongs(int count, String what) throws IOException {
+        check(offset + 8L * count <= fileSize, offset, "unexpected end of file, expected " + what);
+        long[] values = new long[count];
+        for (int done = 0; done < count; ) {
+            int chunk = (int) Math.min(count - done, WINDOW_SIZE / 8);
+            region(8L * chunk, what).asLongBuffer().get(values, done, chunk);
+            offset += 8L * chunk;
+            done += chunk;
+        }
+        return values;
+    }
+
+    /**
+     * Reads an array of chars, unsigned 16-bit values, in bulk.
+     *
+     * @param count Number of chars, at most WINDOW_SIZE / 2
+     * @param what  Description of the values, for errors
+     * @return The values
+     * @throws IOException if the file ends before them or cannot be read
+     */
+    private char[] readChars(int count, String what) throws IOException {
+        check(offset + 2L * count <= fileSize, offset, "unexpected end of file, expected " + what);
+        char[] values = new char[count];
+        region(2L * count, what).asCharBuffer().get(values);
+        offset += 2L * count;
+        return values;
+    }
+
+    /**
+     * Returns the next bytes of the file, from the offset, mapping the window they are in.
+     *
+     * @param length Number of bytes, at most WINDOW_SIZE
+     * @param what   Description of the values they hold, for errors
+     * @return A buffer of exactly those bytes
+     * @throws IOException if the file ends before them or cannot be mapped
+     */
+    private ByteBuffer region(long length, String what) throws IOException {
+        check(offset + length <= fileSize, offset, "unexpected end of file, expected " + what);
+        if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+            windowStart = offset;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+        }
+        return window.slice((int) (offset - windowStart), (int) length);
+    }
+
+    /**
+     * Throws an error at an offset if a condition does not hold.
+     *
+     * @param condition The condition
+     * @param at        Offset of the offending value
+     * @param detail    What is wrong otherwise
+     * @throws ScenarioFormatException if the condition is false
+     */
+    private void check(boolean condition, long at, String detail) throws ScenarioFormatException {
+        if (!condition) {
+            throw new ScenarioFormatException(name, at, detail);
+        }
+    }
+}
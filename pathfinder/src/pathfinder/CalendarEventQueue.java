@@ -0,0 +1,276 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Event queue implemented as a calendar queue (R. Brown, 1988): O(1) amortized per operation.
+ *
+ * Time is divided in slots of a fixed width, and slot s goes to bucket s mod nbuckets,
+ * like the days of a year on a desk calendar. Each bucket is a small array sorted by
+ * descending time, so its earliest event is at the end. Dequeuing scans the buckets
+ * from the slot of the last dequeued event. The number of buckets follows the queue
+ * size, and the width is re-estimated from the spacing of the earliest events on every
+ * resize, so each bucket holds a few events and the scan stops after a few buckets.
+ *
+ * Events with equal times are dequeued in the order they were scheduled.
+ */
+class CalendarEventQueue implements EventQueue {
+
+    private static final int MIN_BUCKETS = 2;
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+    private static final int WIDTH_SAMPLE = 25;
+
+    private Event[][] buckets; // Events of each bucket, by descending time
+    private double[][] times; // Times of the events of each bucket, aligned with buckets
+    private int[] counts; // Number of events in each bucket
+    private int mask; // Number of buckets minus one, the number of buckets is a power of two
+    private double width; // Time span of a slot
+
+    private int size;
+    private long lastSlot; // Slot of the earliest event, no event is in an earlier slot
+    private double lastTime; // Time of the last dequeued event
+    private boolean resizing; // Disables resizing while the width is being estimated
+
+    /**
+     * Constructs an empty calendar event queue.
+     */
+    CalendarEventQueue() {
+        width = 1.0;
+        allocate(MIN_BUCKETS);
+    }
+
+    @Override
+    public void offer(Event e) {
+        insert(e, e.getTime());
+        size++;
+
+        if (size > 2 * (mask + 1) && !resizing) {
+            resize(2 * (mask + 1));
+        }
+    }
+
+    @Override
+    public Event peek() {
+        int b = locate();
+        return b < 0 ? null : buckets[b][counts[b] - 1];
+    }
+
+    @Override
+    public Event poll() {
+        int b = locate();
+        if (b < 0) return null;
+
+        int last = --counts[b];
+        Event e = buckets[b][last];
+        buckets[b][last] = null;
+        lastTime = times[b][last];
+        size--;
+
+        if (size < (mask + 1) / 2 && mask + 1 > MIN_BUCKETS && !resizing) {
+            resize((mask + 1) / 2);
+        }
+        return e;
+    }
+
+    @Override
+    public void removeIf(Predicate<Event> filter) {
+        for (int b = 0; b <= mask; b++) {
+            int kept = 0;
+            for (int i = 0; i < counts[b]; i++) {
+                if (!filter.test(buckets[b][i])) {
+                    buckets[b][kept] = buckets[b][i];
+                    times[b][kept] = times[b][i];
+                    kept++;
+                }
+            }
+            Arrays.fill(buckets[b], kept, counts[b], null);
+            size -= counts[b] - kept;
+            counts[b] = kept;
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<Event> action) {
+        for (int b = 0; b <= mask; b++) {
+            for (int i = 0; i < counts[b]; i++) {
+                action.accept(buckets[b][i]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of a time.
+     *
+     * @param time Event time
+     * @return Slot number
+     */
+    private long slotOf(double time) {
+        return (long) (time / width);
+    }
+
+    /**
+     * Inserts an event in its bucket, keeping the bucket sorted.
+     *
+     * @param e    The event
+     * @param time Its time
+     */
+    private void insert(Event e, double time) {
+        long slot = slotOf(time);
+        int b = (int) (slot & mask);
+
+        if (counts[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], counts[b] * 2);
+            times[b] = Arrays.copyOf(times[b], counts[b] * 2);
+        }
+
+        // Shift the events that come before this one, so that it is dequeued after them
+        Event[] bucket = buckets[b];
+        double[] bucketTimes = times[b];
+        int i = counts[b];
+        while (i > 0 && (bucketTimes[i - 1] < time || (bucketTimes[i - 1] == time && bucket[i - 1].isBefore(e)))) {
+            bucket[i] = bucket[i - 1];
+            bucketTimes[i] = bucketTimes[i - 1];
+            i--;
+        }
+        bucket[i] = e;
+        bucketTimes[i] = time;
+        counts[b]++;
+
+        if (slot < lastSlot || size == 0) {
+            lastSlot = slot;
+        }
+    }
+
+    /**
+     * Finds the bucket holding the earliest event.
+     *
+     * @return Bucket index, or -1 if the queue is empty
+     */
+    private int locate() {
+        if (size == 0) return -1;
+
+        // Scan one year of slots from the last one
+        long slot = lastSlot;
+        for (int n = 0; n <= mask; n++, slot++) {
+            int b = (int) (slot & mask);
+            if (counts[b] > 0 && slotOf(times[b][counts[b] - 1]) <= slot) {
+                lastSlot = slot;
+                return b;
+            }
+        }
+
+        // Nothing within a year: the events are sparse, search directly for the earliest one
+        int best = -1;
+        for (int b = 0; b <= mask; b++) {
+            if (counts[b] > 0 && (best < 0 || times[b][counts[b] - 1] < times[best][counts[best] - 1])) {
+                best = b;
+            }
+        }
+        lastSlot = slotOf(times[best][counts[best] - 1]);
+        return best;
+    }
+
+    /**
+     * Allocates empty buckets.
+     *
+     * @param nbuckets Number of buckets, a power of two
+     */
+    private void allocate(int nbuckets) {
+        buckets = new Event[nbuckets][INITIAL_BUCKET_CAPACITY];
+        times = new double[nbuckets][INITIAL_BUCKET_CAPACITY];
+        counts = new int[nbuckets];
+        mask = nbuckets - 1;
+    }
+
+    /**
+     * Changes the number of buckets, re-estimating the slot width, and re-inserts every event.
+     *
+     * @param nbuckets New number of buckets, a power of two
+     */
+    private void resize(int nbuckets) {
+        resizing = true;
+        double newWidth = estimateWidth();
+
+        Event[][] oldBuckets = buckets;
+        double[][] oldTimes = times;
+        int[] oldCounts = counts;
+
+        width = newWidth;
+        allocate(nbuckets);
+        lastSlot = slotOf(lastTime);
+        int total = size;
+        size = 0;
+        for (int b = 0; b < oldCounts.length; b++) {
+            for (int i = oldCounts[b] - 1; i >= 0; i--) {
+                insert(oldBuckets[b][i], oldTimes[b][i]);
+                size++;
+            }
+        }
+        size = total;
+        resizing = false;
+    }
+
+    /**
+     * Estimates a slot width from the spacing of the earliest events:
+     * three times their average separation, ignoring unusually large gaps.
+     *
+     * @return New slot width
+     */
+    private double estimateWidth() {
+        int samples = Math.min(size, WIDTH_SAMPLE);
+        if (samples < 2) return width;
+
+        double savedLastTime = lastTime;
+        long savedLastSlot = lastSlot;
+        Event[] events = new Event[samples];
+        double[] sampleTimes = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            int b = locate();
+            sampleTimes[i] = times[b][counts[b] - 1];
+            events[i] = poll();
+        }
+        for (int i = 0; i < samples; i++) {
+            offer(events[i]);
+        }
+        lastTime = savedLastTime;
+        lastSlot = Math.min(lastSlot, savedLastSlot);
+
+        double average = (sampleTimes[samples - 1] - sampleTimes[0]) / (samples - 1);
+        double sum = 0;
+        int gaps = 0;
+        for (int i = 1; i < samples; i++) {
+            double gap = sampleTimes[i] - sampleTimes[i - 1];
+            if (gap <= 2 * average) {
+                sum += gap;
+                gaps++;
+            }
+        }
+        double separation = gaps > 0 ? sum / gaps : average;
+        return separation > 0 ? 3 * separation : width;
+    }
+
+    @Override
+    public String toString() {
+        return "CalendarEventQueue{" +
+                "size=" + size +
+                ", buckets=" + (mask + 1) +
+                ", width=" + width +
+                '}';
+    }
+}
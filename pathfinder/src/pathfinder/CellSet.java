@@ -0,0 +1,149 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of cell indices that shares structure with the set it was built from.
+ *
+ * The set is a 32-way trie over the bits of the cell index, its leaves holding 64-bit
+ * words of membership bits, so a leaf covers 2048 consecutive cells. Each node only
+ * stores the children it has, located through a bitmap, so a set costs space in
+ * proportion to the cells it holds rather than to the grid. Adding cells copies the
+ * nodes on their way from the root and shares all the others, and the root is widened
+ * as larger cells are added, so the trie is as shallow as the largest cell allows:
+ * two levels up to 65536 cells, three up to 2^21.
+ */
+final class CellSet {
+
+    private static final int LEAF_SHIFT = 6; // Bits of the cell index within a leaf word
+    private static final int BITS = 5; // Bits of the cell index consumed by each level
+    private static final int MAX_SHIFT = 26; // Shift of a root covering every non-negative index
+
+    /** The empty set. */
+    static final CellSet EMPTY = empty(LEAF_SHIFT);
+
+    private final int shift; // Position of the bits of the cell index that select a child
+    private final int bitmap; // Children present, by their 5-bit index
+    private final long[] words; // Membership words of the present children, in a leaf
+    private final CellSet[] children; // Present children, in a branch
+
+    /**
+     * Constructs a node of the trie.
+     *
+     * @param shift    Position of the bits that select a child, LEAF_SHIFT for a leaf
+     * @param bitmap   Children present
+     * @param words    Words of the present children, for a leaf, else null
+     * @param children Present children, for a branch, else null
+     */
+    private CellSet(int shift, int bitmap, long[] words, CellSet[] children) {
+        this.shift = shift;
+        this.bitmap = bitmap;
+        this.words = words;
+        this.children = children;
+    }
+
+    /**
+     * Returns an empty node.
+     *
+     * @param shift Position of the bits that select a child
+     * @return The node
+     */
+    private static CellSet empty(int shift) {
+        return shift == LEAF_SHIFT ? new CellSet(shift, 0, new long[0], null) : new CellSet(shift, 0, null, new CellSet[0]);
+    }
+
+    /**
+     * Checks whether the set holds a cell, in time proportional to the depth of the trie.
+     *
+     * @param cell Cell index, not negative
+     * @return true if the cell is in the set
+     */
+    boolean contains(int cell) {
+        if (shift < MAX_SHIFT && cell >>> (shift + BITS) != 0) return false;
+
+        CellSet node = this;
+        while (true) {
+            int bit = 1 << ((cell >>> node.shift) & 31);
+            if ((node.bitmap & bit) == 0) return false;
+            int pos = Integer.bitCount(node.bitmap & (bit - 1));
+            if (node.words != null) {
+                return (node.words[pos] & (1L << cell)) != 0;
+            }
+            node = node.children[pos];
+        }
+    }
+
+    /**
+     * Returns the set with some cells added. Each node on the way to the new cells is
+     * copied once, however many of them it leads to.
+     *
+     * @param cells Cell indices, not negative; the first count of them are sorted in place
+     * @param count Number of cells to add
+     * @return The new set, or this set if it already holds every cell
+     */
+    CellSet with(int[] cells, int count) {
+        if (count == 0) return this;
+        Arrays.sort(cells, 0, count);
+
+        CellSet root = this;
+        int last = cells[count - 1];
+        while (root.shift < MAX_SHIFT && last >>> (root.shift + BITS) != 0) {
+            root = root.bitmap == 0
+                    ? empty(root.shift + BITS)
+                    : new CellSet(root.shift + BITS, 1, null, new CellSet[] {root});
+        }
+        return root.insert(cells, 0, count);
+    }
+
+    /**
+     * Returns the subtree rooted at this node with a range of sorted cells added.
+     *
+     * @param cells Sorted cell indices, all within the range of this node
+     * @param from  First cell to add
+     * @param to    End of the cells to add, exclusive
+     * @return The new node, or this node if it already holds every cell
+     */
+    private CellSet insert(int[] cells, int from, int to) {
+        int newBitmap = bitmap;
+        for (int i = from; i < to; i++) {
+            newBitmap |= 1 << ((cells[i] >>> shift) & 31);
+        }
+
+        if (words != null) {
+            long[] newWords = new long[Integer.bitCount(newBitmap)];
+            for (int bits = bitmap, i = 0; bits != 0; bits &= bits - 1, i++) {
+                newWords[Integer.bitCount(newBitmap & (Integer.lowestOneBit(bits) - 1))] = words[i];
+            }
+            for (int i = from; i < to; i++) {
+                int bit = 1 << ((cells[i] >>> shift) & 31);
+                newWords[Integer.bitCount(newBitmap & (bit - 1))] |= 1L << cells[i];
+            }
+            return newBitmap == bitmap && Arrays.equals(newWords, words) ? this : new CellSet(shift, newBitmap, newWords, null);
+        }
+
+        CellSet[] newChildren = new CellSet[Integer.bitCount(newBitmap)];
+        for (int bits = bitmap, i = 0; bits != 0; bits &= bits - 1, i++) {
+            newChildren[Integer.bitCount(newBitmap & (Integer.lowestOneBit(bits) - 1))] = children[i];
+        }
+        boolean changed = newBitmap != bitmap;
+        for (int i = from, j; i < to; i = j) {
+            int index = (cells[i] >>> shift) & 31;
+            for (j = i + 1; j < to && ((cells[j] >>> shift) & 31) == index; j++);
+
+            int pos = Integer.bitCount(newBitmap & ((1 << index) - 1));
+            CellSet child = newChildren[pos] != null ? newChildren[pos] : empty(shift - BITS);
+            newChildren[pos] = child.insert(cells, i, j);
+            changed |= newChildren[pos] != child;
+        }
+        return changed ? new CellSet(shift, newBitmap, null, newChildren) : this;
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * The state of a running simulation at an observation, and its file, big-endian:
+ *
+ *   int    magic, "PFCK"
+ *   int    version, VERSION
+ *   long   length of the scenario, then the scenario in the binary format, not rasterized
+ *   UTF    epidemic policy, queue type
+ *   int    observation          double  first hit time
+ *   PEC:   double time, next update time; int events; long skipped events; int compactions;
+ *          long sequence; int n_events, then the types (bytes), times, sequences and owner ids
+ *   population:
+ *          long random seed, gamma; int capacity, then the generation of every id;
+ *          int n_free, then the free ids; int n_nodes, then the parent index (-1 for none),
+ *          cell and cost of every path node, parents first; int n_live, then the ids,
+ *          comforts and tail node indices of the live individuals; boolean path complete;
+ *          int best path cost; long best path version; double best comfort;
+ *          int best path tail node (-1 for none), id of the best individual (-1 if dead);
+ *          int n_fittest, then the fittest ids and their generations; int sweep cursor
+ *   int    n_workers, then the seed and gamma of each worker's random source
+ *
+ * The paths of the individuals share their prefixes, so the path nodes are written once
+ * each, as a table, with every tail as an index into it: a checkpoint grows with the
+ * number of distinct nodes, not with the sum of the path lengths.
+ *
+ * A checkpoint is captured on the simulation thread, in O(n) array copies, since path
+ * nodes are immutable and shared. Building the node table and writing the file can then
+ * happen on another thread while the simulation goes on. The file is written next to
+ * its target and moved over it once complete, so a crash never leaves a torn checkpoint.
+ */
+final class Checkpoint {
+
+    /** First int of every checkpoint file, "PFCK" in ASCII. */
+    static final int MAGIC = 0x5046434B;
+    /** Version of the format written, the only one read. */
+    static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Magic number, version and scenario length
+    private static final int PREFIX_BYTES = 16;
+
+    final Scenario scenario;
+    final EpidemicPolicy epidemicPolicy;
+    final Pec.QueueType queueType;
+    final int observation; // Next observation to output
+    final double firstHitTime;
+    final Pec.Snapshot pec;
+    final Population.Snapshot population;
+    final SplitMixRandom[] windowRandoms; // Empty when events run one at a time
+
+    /**
+     * Constructs a checkpoint.
+     *
+     * @param scenario       The scenario simulated
+     * @param epidemicPolicy The epidemic policy of the population
+     * @param queueType      The event queue of the PEC
+     * @param observation    Next observation to output
+     * @param firstHitTime   Time the final point was first hit, -1 until then
+     * @param pec            Snapshot of the PEC
+     * @param population     Snapshot of the population
+     * @param windowRandoms  Random sources of the window workers, empty if there are none
+     */
+    Checkpoint(Scenario scenario, EpidemicPolicy epidemicPolicy, Pec.QueueType queueType, int observation, double firstHitTime,
+               Pec.Snapshot pec, Population.Snapshot population, SplitMixRandom[] windowRandoms) {
+        this.scenario = scenario;
+        this.epidemicPolicy = epidemicPolicy;
+        this.queueType = queueType;
+        this.observation = observation;
+        this.firstHitTime = firstHitTime;
+        this.pec = pec;
+        this.population = population;
+        this.windowRandoms = windowRandoms;
+    }
+
+    /**
+     * Writes the checkpoint, replacing the file atomically.
+     *
+     * @param file Path of the file
+     * @throws IOException if the file cannot be written
+     */
+    void write(String file) throws IOException {
+        String temporary = file + ".tmp";
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(temporary)), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(BinaryScenario.size(scenario));
+            BinaryScenario.write(scenario, out, false);
+            out.writeUTF(epidemicPolicy.toString());
+            out.writeUTF(queueType.name());
+            out.writeInt(observation);
+            out.writeDouble(firstHitTime);
+            writePec(out);
+            writePopulation(out);
+            out.writeInt(windowRandoms.length);
+            for (SplitMixRandom random : windowRandoms) {
+                out.writeLong(random.getSeed());
+                out.writeLong(random.getGamma());
+            }
+        }
+        try {
+            Files.move(Paths.get(temporary), Paths.get(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(Paths.get(temporary), Paths.get(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes the snapshot of the PEC.
+     *
+     * @param out The stream
+     * @throws IOException if the file cannot be written
+     */
+    private void writePec(DataOutputStream out) throws IOException {
+        out.writeDouble(pec.time);
+        out.writeDouble(pec.nextUpdateTime);
+        out.writeInt(pec.events);
+        out.writeLong(pec.skippedEvents);
+        out.writeInt(pec.compactions);
+        out.writeLong(pec.sequence);
+        out.writeInt(pec.types.length);
+        out.write(pec.types);
+        for (double time : pec.times) out.writeDouble(time);
+        for (long sequence : pec.sequences) out.writeLong(sequence);
+        for (int owner : pec.owners) out.writeInt(owner);
+    }
+
+    /**
+     * Writes the snapshot of the population, with its path nodes as a table.
+     *
+     * @param out The stream
+     * @throws IOException if the file cannot be written
+     */
+    private void writePopulation(DataOutputStream out) throws IOException {
+        out.writeLong(population.randomSeed);
+        out.writeLong(population.randomGamma);
+        writeInts(out, population.generations);
+        writeInts(out, population.freeIds);
+
+        // Number the nodes reachable from the tails, every parent before its children
+        IdentityHashMap<Path.Node, Integer> indices = new IdentityHashMap<>();
+        ArrayList<Path.Node> nodes = new ArrayList<>();
+        ArrayList<Path.Node> pending = new ArrayList<>();
+        for (int i = 0; i <= population.tails.length; i++) {
+            Path.Node node = i < population.tails.length ? population.tails[i] : population.bestPathTail;
+            for (; node != null && !indices.containsKey(node); node = node.parent) {
+                pending.add(node);
+            }
+            for (int j = pending.size() - 1; j >= 0; j--) {
+                indices.put(pending.get(j), nodes.size());
+                nodes.add(pending.get(j));
+            }
+            pending.clear();
+        }
+        out.writeInt(nodes.size());
+        for (Path.Node node : nodes) out.writeInt(node.parent != null ? indices.get(node.parent) : -1);
+        for (Path.Node node : nodes) out.writeInt(node.cell);
+        for (Path.Node node : nodes) out.writeInt(node.cost);
+
+        writeInts(out, population.ids);
+        for (double comfort : population.comforts) out.writeDouble(comfort);
+        for (Path.Node tail : population.tails) out.writeInt(indices.get(tail));
+
+        out.writeBoolean(population.pathComplete);
+        out.writeInt(population.bestPathCost);
+        out.writeLong(population.bestPathVersion);
+        out.writeDouble(population.bestComfort);
+        out.writeInt(population.bestPathTail != null ? indices.get(population.bestPathTail) : -1);
+        out.writeInt(population.bestId);
+        writeInts(out, population.fittest);
+        for (int generation : population.fittestGenerations) out.writeInt(generation);
+        out.writeInt(population.sweepCursor);
+    }
+
+    /**
+     * Writes an array of ints, after its length.
+     *
+     * @param out    The stream
+     * @param values The values
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    /**
+     * Reads a checkpoint file.
+     *
+     * @param file Path of the file
+     * @return The checkpoint
+     * @throws ScenarioFormatException if the file is malformed
+     * @throws IOException if the file cannot be read
+     */
+    static Checkpoint read(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES);
+            while (prefix.hasRemaining() && channel.read(prefix) >= 0) {
+                // Read the whole prefix
+            }
+            if (prefix.hasRemaining()) {
+                throw new ScenarioFormatException(file, prefix.position(), "unexpected end of file, expected the header");
+            }
+            if (prefix.getInt(0) != MAGIC) {
+                throw new ScenarioFormatException(file, 0, "not a checkpoint file");
+            }
+            if (prefix.getInt(4) != VERSION) {
+                throw new ScenarioFormatException(file, 4, "unsupported version " + prefix.getInt(4) + ", expected " + VERSION);
+            }
+            long scenarioLength = prefix.getLong(8);
+            if (scenarioLength < 0) {
+                throw new ScenarioFormatException(file, 8, "invalid scenario length " + scenarioLength);
+            }
+            Scenario scenario = BinaryScenario.read(file, channel, PREFIX_BYTES, scenarioLength);
+
+            long start = PREFIX_BYTES + scenarioLength;
+            channel.position(start);
+            Input in = new Input(file, Channels.newInputStream(channel), start, channel.size());
+            return in.readCheckpoint(scenario);
+        }
+    }
+
+    /**
+     * Reads the part of a checkpoint after its scenario, keeping track of the offset for errors.
+     */
+    private static final class Input extends FilterInputStream {
+        private final String file;
+        private final long fileSize;
+        private final DataInputStream data;
+        private long offset;
+        private long valueOffset; // Offset of the last value read
+
+        Input(String file, InputStream in, long offset, long fileSize) {
+            super(new BufferedInputStream(in, BUFFER_SIZE));
+            this.file = file;
+            this.fileSize = fileSize;
+            this.offset = offset;
+            this.data = new DataInputStream(this);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) offset++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) offset += n;
+            return n;
+        }
+
+        /**
+         * Reads everything after the scenario, checking that each value fits the simulation.
+         *
+         * @param scenario The scenario read before
+         * @return The checkpoint
+         * @throws IOException if the file is malformed or cannot be read
+         */
+        Checkpoint readCheckpoint(Scenario scenario) throws IOException {
+            try {
+                int cells = scenario.getGrid().getN() * scenario.getGrid().getM();
+
+                String policySpec = readUTF();
+                EpidemicPolicy epidemicPolicy;
+                try {
+                    epidemicPolicy = EpidemicPolicy.parse(policySpec);
+                } catch (IllegalArgumentException e) {
+                    throw error("invalid epidemic policy " + policySpec);
+                }
+                String queueName = readUTF();
+                Pec.QueueType queueType;
+                try {
+                    queueType = Pec.QueueType.valueOf(queueName);
+                } catch (IllegalArgumentException e) {
+                    throw error("invalid queue type " + queueName);
+                }
+                int observation = readInt();
+                check(observation >= 1, "invalid observation " + observation);
+                double firstHitTime = readDouble();
+
+                Pec.Snapshot pec = readPec();
+
+                long randomSeed = readLong();
+                long randomGamma = readLong();
+                check((randomGamma & 1) != 0, "the gamma of a random source must be odd");
+                int[] generations = readInts(4);
+                int[] freeIds = readInts(4);
+                int nodeCount = readCount(12);
+                int[] parents = new int[nodeCount];
+                for (int i = 0; i < nodeCount; i++) {
+                    parents[i] = readInt();
+                    check(parents[i] >= -1 && parents[i] < i, "invalid parent node " + parents[i]);
+                }
+                Path.Node[] nodes = new Path.Node[nodeCount];
+                int[] nodeCells = new int[nodeCount];
+                for (int i = 0; i < nodeCount; i++) {
+                    nodeCells[i] = readInt();
+                    check(nodeCells[i] >= 0 && nodeCells[i] < cells, "invalid cell " + nodeCells[i]);
+                }
+                for (int i = 0; i < nodeCount; i++) {
+                    nodes[i] = new Path.Node(nodeCells[i], readInt(), parents[i] >= 0 ? nodes[parents[i]] : null);
+                }
+
+                int[] ids = readInts(16);
+                double[] comforts = new double[ids.length];
+                for (int i = 0; i < ids.length; i++) comforts[i] = readDouble();
+                Path.Node[] tails = new Path.Node[ids.length];
+                for (int i = 0; i < ids.length; i++) tails[i] = readNode(nodes, false);
+
+                boolean pathComplete = readBoolean();
+                int bestPathCost = readInt();
+                long bestPathVersion = readLong();
+                double bestComfort = readDouble();
+                Path.Node bestPathTail = readNode(nodes, true);
+                int bestId = readInt();
+                int[] fittest = readInts(8);
+                int[] fittestGenerations = new int[fittest.length];
+                for (int i = 0; i < fittest.length; i++) fittestGenerations[i] = readInt();
+                int sweepCursor = readInt();
+                Population.Snapshot population = new Population.Snapshot(generations, freeIds, ids, comforts, tails,
+                        pathComplete, bestPathCost, bestPathVersion, bestComfort, bestPathTail, bestId,
+                        fittest, fittestGenerations, sweepCursor, randomSeed, randomGamma);
+
+                int workers = readCount(16);
+                check(workers != 1, "a single window worker");
+                SplitMixRandom[] windowRandoms = new SplitMixRandom[workers];
+                for (int i = 0; i < workers; i++) {
+                    long seed = readLong();
+                    long gamma = readLong();
+                    check((gamma & 1) != 0, "the gamma of a random source must be odd");
+                    windowRandoms[i] = new SplitMixRandom(seed, gamma);
+                }
+
+                valueOffset = offset;
+                check(read() < 0, "unexpected data after the checkpoint");
+                return new Checkpoint(scenario, epidemicPolicy, queueType, observation, firstHitTime, pec, population, windowRandoms);
+            } catch (EOFException e) {
+                throw new ScenarioFormatException(file, offset, "unexpected end of file");
+            }
+        }
+
+        /**
+         * Reads the snapshot of the PEC.
+         *
+         * @return The snapshot
+         * @throws IOException if the file is malformed or cannot be read
+         */
+        private Pec.Snapshot readPec() throws IOException {
+            double time = readDouble();
+            double nextUpdateTime = readDouble();
+            int events = readInt();
+            long skippedEvents = readLong();
+            int compactions = readInt();
+            long sequence = readLong();
+            int count = readCount(21);
+            byte[] types = new byte[count];
+            data.readFully(types);
+            double[] times = new double[count];
+            for (int i = 0; i < count; i++) times[i] = readDouble();
+            long[] sequences = new long[count];
+            for (int i = 0; i < count; i++) {
+                sequences[i] = readLong();
+                check(sequences[i] >= 0 && sequences[i] < sequence, "invalid event sequence number " + sequences[i]);
+            }
+            int[] owners = new int[count];
+            for (int i = 0; i < count; i++) owners[i] = readInt();
+            return new Pec.Snapshot(time, nextUpdateTime, events, skippedEvents, compactions, sequence, types, times, sequences, owners);
+        }
+
+        /**
+         * Reads the index of a path node.
+         *
+         * @param nodes    The node table
+         * @param nullable Whether -1, for no node, is valid
+         * @return The node
+         * @throws IOException if the index is invalid or cannot be read
+         */
+        private Path.Node readNode(Path.Node[] nodes, boolean nullable) throws IOException {
+            int index = readInt();
+            if (nullable && index == -1) return null;
+            check(index >= 0 && index < nodes.length, "invalid path node " + index);
+            return nodes[index];
+        }
+
+        /**
+         * Reads an array of ints, after its length.
+         *
+         * @param bytesPerItem Bytes each item takes in the file, to check the length against
+         * @return The values
+         * @throws IOException if the file is malformed or cannot be read
+         */
+        private int[] readInts(int bytesPerItem) throws IOException {
+            int[] values = new int[readCount(bytesPerItem)];
+            for (int i = 0; i < values.length; i++) values[i] = readInt();
+            return values;
+        }
+
+        /**
+         * Reads the number of items of a section, checking they fit in the rest of the file,
+         * so a corrupted count is reported instead of allocating a huge array.
+         *
+         * @param bytesPerItem Bytes each item takes in the file
+         * @return The number of items
+         * @throws IOException if the count is invalid or cannot be read
+         */
+        private int readCount(int bytesPerItem) throws IOException {
+            int count = readInt();
+            check(count >= 0 && (long) count * bytesPerItem <= fileSize - offset, "invalid count " + count);
+            return count;
+        }
+
+        private String readUTF() throws IOException {
+            valueOffset = offset;
+            return data.readUTF();
+        }
+
+        private int readInt() throws IOException {
+            valueOffset = offset;
+            return data.readInt();
+        }
+
+        private long readLong() throws IOException {
+            valueOffset = offset;
+            return data.readLong();
+        }
+
+        private double readDouble() throws IOException {
+            valueOffset = offset;
+            return data.readDouble();
+        }
+
+        private boolean readBoolean() throws IOException {
+            valueOffset = offset;
+            return data.readBoolean();
+        }
+
+        /**
+         * Throws an error at the last value read if a condition does not hold.
+         *
+         * @param condition The condition
+         * @param detail    What is wrong otherwise
+         * @throws ScenarioFormatException if the condition is false
+         */
+        private void check(boolean condition, String detail) throws ScenarioFormatException {
+            if (!condition) {
+                throw error(detail);
+            }
+        }
+
+        /**
+         * Creates an error at the last value read.
+         *
+         * @param detail What is wrong
+         * @return The exception
+         */
+        private ScenarioFormatException error(String detail) {
+            return new ScenarioFormatException(file, valueOffset, detail);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+/**
+ * Comfort of an individual and the delays of its events, for one population on one grid.
+ *
+ * The grid constants the comfort depends on (cmax, n + m, the final point) and the
+ * population parameters are read once, when the model is built. The k-th power is
+ * taken by repeated squaring instead of Math.pow, and the logarithm of the event
+ * delays by log(), a table lookup followed by a short series, without any division.
+ *
+ * Compared with the direct formulas, (1 - ((cost - size + 2) / ((cmax - 1) * size + 3)))^k
+ * * (1 - dist / (n + m + 1))^k and (1 - ln(c)) * param, the comfort is within a relative
+ * error of POW_RELATIVE_ERROR * k, and log() within LOG_ERROR, absolute below |ln x| = 1
+ * and relative above it. ComfortModelTest checks these bounds.
+ */
+final class ComfortModel {
+
+    /** Bound on the relative error of pow() per unit of exponent, a few ulps. */
+    static final double POW_RELATIVE_ERROR = 4 * Math.ulp(1.0);
+    /** Bound on the error of log(), absolute below |ln x| = 1 and relative above it. */
+    static final double LOG_ERROR = 1e-14;
+
+    private static final double LN2 = Math.log(2);
+    // Subintervals of [1, 2) of the logarithm table, by their first mantissa bits
+    private static final int LOG_TABLE_BITS = 7;
+    private static final double LOG_NEAR_ONE = 1.0 / 128;
+    // Inverse of the center of each subinterval, and the logarithm of that center
+    private static final double[] LOG_INVERSES = new double[1 << LOG_TABLE_BITS];
+    private static final double[] LOG_CENTERS = new double[1 << LOG_TABLE_BITS];
+    static {
+        for (int i = 0; i < LOG_INVERSES.length; i++) {
+            LOG_INVERSES[i] = 1 / (1 + (i + 0.5) / LOG_INVERSES.length);
+            LOG_CENTERS[i] = -Math.log(LOG_INVERSES[i]);
+        }
+    }
+
+    private final Grid grid;
+    private final int k, mu, delta, ro;
+    private final double cmaxMinusOne; // cmax - 1
+    private final double sizePlusOne; // n + m + 1
+    private final int endX, endY, endCell;
+
+    /**
+     * Constructs the comfort model of a population on a grid.
+     *
+     * @param grid The grid
+     * @param k Comfort exponent
+     * @param mu Death time parameter
+     * @param delta Move time parameter
+     * @param ro Reproduction time parameter
+     */
+    ComfortModel(Grid grid, int k, int mu, int delta, int ro) {
+        this.grid = grid;
+        this.k = k;
+        this.mu = mu;
+        this.delta = delta;
+        this.ro = ro;
+        this.cmaxMinusOne = grid.getCmax() - 1.0;
+        this.sizePlusOne = grid.getSize() + 1.0;
+        int[] end = grid.getEndCoordinates();
+        this.endX = end[0];
+        this.endY = end[1];
+        this.endCell = grid.cellIndex(endX, endY);
+    }
+
+    /**
+     * Gets the grid of the model.
+     *
+     * @return The grid
+     */
+    Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Computes the comfort of a path.
+     *
+     * @param cost Cost of the path
+     * @param size Number of cells of the path
+     * @param last Last cell of the path
+     * @return The comfort
+     */
+    double comfort(int cost, int size, int last) {
+        int dist = Math.abs(grid.getX(last) - endX) + Math.abs(grid.getY(last) - endY);
+        double costFactor = 1 - ((cost - size + 2.0) / (cmaxMinusOne * size + 3.0));
+        double distFactor = 1 - dist / sizePlusOne;
+        return pow(costFactor * distFactor, k);
+    }
+
+    /**
+     * Checks whether a cell is the final point.
+     *
+     * @param cell Cell index
+     * @return true if the cell is the final point
+     */
+    boolean isEnd(int cell) {
+        return cell == endCell;
+    }
+
+    /**
+     * Computes the delay before an individual of a given comfort dies.
+     *
+     * @param comfort Comfort of the individual
+     * @return Death time
+     */
+    double deathTime(double comfort) {
+        return (1 - log(1 - comfort)) * mu;
+    }
+
+    /**
+     * Computes the delay before an individual of a given comfort moves.
+     *
+     * @param comfort Comfort of the individual
+     * @return Move time
+     */
+    double moveTime(double comfort) {
+        return (1 - log(comfort)) * delta;
+    }
+
+    /**
+     * Computes the delay before an individual of a given comfort reproduces.
+     *
+     * @param comfort Comfort of the individual
+     * @return Reproduction time
+     */
+    double reproductionTime(double comfort) {
+        return (1 - log(comfort)) * ro;
+    }
+
+    /**
+     * Raises a number to an integer power by repeated squaring, in O(log |e|) multiplications.
+     *
+     * @param base The base
+     * @param e The exponent
+     * @return base to the power e
+     */
+    static double pow(double base, int e) {
+        if (e < 0) {
+            return 1 / pow(base, -e);
+        }
+        double result = 1;
+        while (e != 0) {
+            if ((e & 1) != 0) result *= base;
+            base *= base;
+            e >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the natural logarithm.
+     * x is split into 2^e * m with m in [1, 2), m is divided by the center c of one of
+     * 128 subintervals, through a table of 1 / c, and ln(m / c), |m / c - 1| &lt; 1 / 256, is
+     * summed up to its 7th power, leaving a truncation error below 1e-18. Arguments within
+     * 1 / 128 of 1 skip the table, so ln x stays accurate relative to its size. Zero,
+     * subnormal, negative, infinite and NaN arguments are left to Math.log.
+     *
+     * @param x The argument
+     * @return ln x
+     */
+    static double log(double x) {
+        double r = x - 1;
+        if (Math.abs(r) < LOG_NEAR_ONE) {
+            return log1p(r);
+        }
+
+        long bits = Double.doubleToRawLongBits(x);
+        int exponent = (int) (bits >>> 52); // Biased; the sign bit makes it above 0x7FE
+        if (exponent == 0 || exponent >= 0x7FF) {
+            return Math.log(x);
+        }
+
+        int i = (int) (bits >>> (52 - LOG_TABLE_BITS)) & ((1 << LOG_TABLE_BITS) - 1);
+        double m = Double.longBitsToDouble((bits & 0x000FFFFFFFFFFFFFL) | 0x3FF0000000000000L);
+        return ((exponent - 1023) * LN2 + LOG_CENTERS[i]) + log1p(m * LOG_INVERSES[i] - 1);
+    }
+
+    /**
+     * Computes ln(1 + r) for small r, by its series up to r^7.
+     *
+     * @param r The argument, |r| &lt; 1 / 128
+     * @return ln(1 + r)
+     */
+    private static double log1p(double r) {
+        double series = 1.0 / 7;
+        series = 1.0 / 6 - r * series;
+        series = 1.0 / 5 - r * series;
+        series = 1.0 / 4 - r * series;
+        series = 1.0 / 3 - r * series;
+        series = 1.0 / 2 - r * series;
+        return r - r * r * series;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.Writer;
+
+/**
+ * Output sink writing a CSV table with a row per observation and a last row for the result.
+ * The configuration is the input of the simulation, so only the header line is written for it.
+ * Paths are written as space-separated x:y pairs, and the best path cost is empty until
+ * the final point is hit.
+ */
+class CsvOutputSink extends OutputSink {
+
+    /**
+     * Constructs a CSV sink.
+     * @param out The writer the table is written to
+     */
+    CsvOutputSink(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void writeConfig(Grid grid, int tau, int v, int vmax, int k, int mu, int delta, int ro) {
+        record.append("record,observation,time,events,population_size,path_complete,best_path_cost,best_comfort,best_path\n");
+        emit();
+    }
+
+    @Override
+    public void writeObservation(Grid grid, int observation, double time, int events, int populationSize,
+                                 boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append("observation,").append(observation).append(',').append(time).append(',')
+                .append(events).append(',').append(populationSize);
+        appendBest(grid, pathComplete, bestPath, bestPathCost, bestComfort);
+        emit();
+    }
+
+    @Override
+    public void writeResult(Grid grid, boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append("result,,,,");
+        appendBest(grid, pathComplete, bestPath, bestPathCost, bestComfort);
+        emit();
+    }
+
+    /**
+     * Appends the columns describing the best path and ends the row.
+     * @param grid The grid
+     * @param pathComplete Whether the final point has been hit
+     * @param bestPath The best path, or null
+     * @param bestPathCost Cost of the best path
+     * @param bestComfort Comfort of the best path
+     */
+    private void appendBest(Grid grid, boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append(',').append(pathComplete).append(',');
+        if (pathComplete) {
+            record.append(bestPathCost);
+        }
+        record.append(',').append(bestComfort).append(',');
+        if (bestPath != null) {
+            int[] cells = bestPath.toArray();
+            for (int i = 0; i < cells.length; i++) {
+                if (i > 0) record.append(' ');
+                record.append(grid.getX(cells[i])).append(':').append(grid.getY(cells[i]));
+            }
+        }
+        record.append('\n');
+    }
+}
@@ -26,13 +26,33 @@ public class Death extends Event {
         super(time, individual, pec);
     }
 
+    /**
+     * Returns the type code of death events.
+     *
+     * @return Event.DEATH
+     */
+    @Override
+    byte getType() {
+        return DEATH;
+    }
+
     /**
      * Executes the death event logic.
      * If the individual is alive, marks them as dead.
      */
     @Override
     public void execute() {
-        // Implementation of the death event logic
+        run(time, individual, pec);
+    }
+
+    /**
+     * Death event logic, shared by event objects and the PEC event store.
+     *
+     * @param time       The time at which the event occurs.
+     * @param individual The individual involved in the event.
+     * @param pec        The event controller or manager.
+     */
+    static void run(double time, Individual individual, Pec pec) {
         if (individual.isAlive())
             individual.death();
     }
@@ -0,0 +1,132 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+/**
+ * When and how a population runs its epidemics.
+ *
+ * An epidemic is triggered when the population grows past the high watermark.
+ * It then sweeps the population, sparing the fittest individuals and killing each
+ * of the others with probability 1 - comfort, and keeps sweeping until the size is
+ * back to the low watermark. Both watermarks are fractions of the maximum population
+ * size. When the low watermark is not below the high one, an epidemic is a single
+ * sweep, as in the original model.
+ *
+ * With a chunk size, a sweep is spread over the following births, each birth
+ * visiting that many ids, instead of running all at once. Should the births
+ * outpace it, the size passing the high watermark again, the sweep is finished
+ * at once and followed by full sweeps down to the low watermark, as with the
+ * watermark policy, so the size goes at most one above the high watermark, unless
+ * a whole sweep spares everyone.
+ *
+ * Spec strings, as given on the command line:
+ *   exact                              single sweep as soon as the size exceeds vmax
+ *   watermark:high:low                 sweep above high * vmax until at most low * vmax
+ *   incremental:high:low:chunk         same, visiting chunk ids per birth
+ */
+public class EpidemicPolicy {
+
+    /** The original policy: a full sweep as soon as the population exceeds vmax. */
+    public static final EpidemicPolicy EXACT = new EpidemicPolicy(1.0, 1.0, 0);
+
+    private double high; // Trigger threshold, as a fraction of vmax
+    private double low; // Target size, as a fraction of vmax
+    private int chunk; // Ids swept per birth, 0 to sweep all at once
+
+    /**
+     * Constructs an epidemic policy.
+     * @param high Trigger threshold, as a fraction of vmax
+     * @param low Target size, as a fraction of vmax
+     * @param chunk Ids swept per birth, 0 to sweep all at once
+     */
+    public EpidemicPolicy(double high, double low, int chunk) {
+        if (high <= 0 || low <= 0 || chunk < 0) {
+            throw new IllegalArgumentException("Invalid epidemic policy: watermarks must be positive and chunk not negative");
+        }
+        this.high = high;
+        this.low = low;
+        this.chunk = chunk;
+    }
+
+    /**
+     * Parses a policy spec: exact, watermark:high:low or incremental:high:low:chunk.
+     * @param spec The policy spec
+     * @return The policy
+     * @throws IllegalArgumentException if the spec is malformed
+     */
+    public static EpidemicPolicy parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "exact":
+                    if (parts.length == 1) return EXACT;
+                    break;
+                case "watermark":
+                    if (parts.length == 3) {
+                        return new EpidemicPolicy(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), 0);
+                    }
+                    break;
+                case "incremental":
+                    if (parts.length == 4) {
+                        return new EpidemicPolicy(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                                Integer.parseInt(parts[3]));
+                    }
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid epidemic policy: " + spec, e);
+        }
+        throw new IllegalArgumentException("Invalid epidemic policy: " + spec);
+    }
+
+    /**
+     * Gets the population size above which an epidemic starts.
+     * @param maxSize Maximum population size
+     * @return High watermark
+     */
+    public int getHighWatermark(int maxSize) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.floor(high * maxSize));
+    }
+
+    /**
+     * Gets the population size an epidemic sweeps down to.
+     * @param maxSize Maximum population size
+     * @return Low watermark
+     */
+    public int getLowWatermark(int maxSize) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.floor(low * maxSize));
+    }
+
+    /**
+     * Checks whether an epidemic keeps sweeping until the low watermark.
+     * @return True if sweeps repeat, false for a single sweep
+     */
+    public boolean isRepeating() {
+        return low < high;
+    }
+
+    /**
+     * Gets the number of ids swept per birth.
+     * @return Chunk size, 0 when a sweep runs all at once
+     */
+    public int getChunk() {
+        return chunk;
+    }
+
+    /**
+     * Returns a string representation of the policy, in spec form.
+     * @return The policy spec
+     */
+    @Override
+    public String toString() {
+        if (this == EXACT) return "exact";
+        return chunk == 0 ? "watermark:" + high + ":" + low : "incremental:" + high + ":" + low + ":" + chunk;
+    }
+}
@@ -15,6 +15,14 @@ package pathfinder;
 
 abstract class Event {
 
+    /**
+     * Type codes of the events, used by the PEC to schedule and dispatch events
+     * without event objects.
+     */
+    static final byte MOVE = 0;
+    static final byte REPRODUCTION = 1;
+    static final byte DEATH = 2;
+
     /**
      * Reference to the event queue (PEC) where this event is managed.
      */
@@ -30,6 +38,11 @@ abstract class Event {
      */
     protected Individual individual;
 
+    /**
+     * Order in which the event was scheduled, which breaks ties between events at equal times.
+     */
+    protected long sequence;
+
     /**
      * Constructs an Event with the specified time, individual, and event queue.
      *
@@ -43,6 +56,26 @@ abstract class Event {
         this.pec = pec;
     }
 
+    /**
+     * Creates an event object from its type code.
+     *
+     * @param type       the event type code
+     * @param time       the time at which the event is scheduled
+     * @param individual the individual involved in the event
+     * @param pec        the event queue managing this event
+     * @return the event
+     */
+    static Event create(byte type, double time, Individual individual, Pec pec) {
+        switch (type) {
+            case MOVE:
+                return new Move(time, individual, pec);
+            case REPRODUCTION:
+                return new Reproduction(time, individual, pec);
+            default:
+                return new Death(time, individual, pec);
+        }
+    }
+
     /**
      * Returns the scheduled time of the event.
      *
@@ -61,6 +94,35 @@ abstract class Event {
         return individual;
     }
 
+    /**
+     * Returns the order in which the event was scheduled.
+     *
+     * @return the sequence number
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets the order in which the event was scheduled; the PEC numbers events as they are queued.
+     *
+     * @param sequence the sequence number
+     */
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Checks whether the event comes before another one: it is earlier, or at the same
+     * time and scheduled first.
+     *
+     * @param other the other event
+     * @return true if this event is dequeued first
+     */
+    boolean isBefore(Event other) {
+        return time < other.time || (time == other.time && sequence < other.sequence);
+    }
+
     /**
      * Returns a string representation of the event, including its type, time, and individual.
      *
@@ -75,6 +137,13 @@ abstract class Event {
                 '}';
     }
 
+    /**
+     * Returns the type code of the event.
+     *
+     * @return the event type code
+     */
+    abstract byte getType();
+
     /**
      * Executes the event's logic.
      * This method must be implemented by subclasses to define specific event behavior.
@@ -0,0 +1,73 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A queue of events ordered by time, used by the PEC.
+ * Events at equal times are ordered by their sequence number, so every implementation
+ * dequeues the same events in the same order.
+ * Implementations differ in how they trade memory for the cost of each operation.
+ */
+interface EventQueue {
+
+    /**
+     * Adds an event to the queue.
+     *
+     * @param e The event to add
+     */
+    void offer(Event e);
+
+    /**
+     * Returns the earliest event without removing it.
+     *
+     * @return The earliest event, or null if the queue is empty
+     */
+    Event peek();
+
+    /**
+     * Removes and returns the earliest event.
+     *
+     * @return The earliest event, or null if the queue is empty
+     */
+    Event poll();
+
+    /**
+     * Removes every event matching a condition.
+     *
+     * @param filter Condition of the events to remove
+     */
+    void removeIf(Predicate<Event> filter);
+
+    /**
+     * Visits every event in the queue, in no particular order.
+     *
+     * @param action Action run on each event
+     */
+    void forEach(Consumer<Event> action);
+
+    /**
+     * Returns the number of events in the queue.
+     *
+     * @return Queue size
+     */
+    int size();
+
+    /**
+     * Checks whether the queue is empty.
+     *
+     * @return true if there are no events
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Event storage without event objects, used by the PEC in store mode.
+ *
+ * Events live in slots of parallel primitive arrays (time, type code and individual
+ * handle), ordered by a 4-ary heap of slot numbers whose keys are copied alongside
+ * for locality: the time, and the sequence number that orders events at equal times.
+ * Freed slots are kept on a free list, so once the arrays have grown to the peak
+ * queue size, scheduling and dequeuing events allocate nothing.
+ *
+ * Individuals are referred to by small integer handles, handed out when an individual
+ * first has an event queued and taken back once it has none left.
+ */
+class EventStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Event slots
+    private double[] times;
+    private byte[] types;
+    private int[] owners; // Handle of the individual of each event
+    private int[] freeSlots; // Stack of unused slots
+    private int freeSlotCount;
+
+    // 4-ary heap of slots, with their times and sequence numbers copied alongside
+    private int[] heap;
+    private double[] heapTimes;
+    private long[] heapSequences; // Order in which each event was scheduled
+    private int size;
+
+    // Individuals by handle
+    private Individual[] individuals;
+    private int[] freeHandles; // Stack of unused handles
+    private int freeHandleCount;
+
+    /**
+     * Constructs an empty event store.
+     */
+    EventStore() {
+        times = new double[INITIAL_CAPACITY];
+        types = new byte[INITIAL_CAPACITY];
+        owners = new int[INITIAL_CAPACITY];
+        freeSlots = new int[INITIAL_CAPACITY];
+        for (int i = 0; i < INITIAL_CAPACITY; i++) {
+            freeSlots[i] = INITIAL_CAPACITY - 1 - i;
+        }
+        freeSlotCount = INITIAL_CAPACITY;
+
+        heap = new int[INITIAL_CAPACITY];
+        heapTimes = new double[INITIAL_CAPACITY];
+        heapSequences = new long[INITIAL_CAPACITY];
+        size = 0;
+
+        individuals = new Individual[INITIAL_CAPACITY];
+        freeHandles = new int[INITIAL_CAPACITY];
+        for (int i = 0; i < INITIAL_CAPACITY; i++) {
+            freeHandles[i] = INITIAL_CAPACITY - 1 - i;
+        }
+        freeHandleCount = INITIAL_CAPACITY;
+    }
+
+    /**
+     * Adds an event.
+     *
+     * @param type       Event type code (Event.MOVE, Event.REPRODUCTION or Event.DEATH)
+     * @param time       Event time
+     * @param sequence   Order in which the event was scheduled
+     * @param individual The individual involved in the event
+     */
+    void push(byte type, double time, long sequence, Individual individual) {
+        if (freeSlotCount == 0) {
+            growSlots();
+        }
+        int slot = freeSlots[--freeSlotCount];
+        times[slot] = time;
+        types[slot] = type;
+        owners[slot] = handleOf(individual);
+
+        siftUp(size++, slot, time, sequence);
+    }
+
+    /**
+     * Returns the time of the earliest event.
+     *
+     * @return Event time
+     */
+    double peekTime() {
+        return heapTimes[0];
+    }
+
+    /**
+     * Returns the slot of the earliest event.
+     *
+     * @return Event slot
+     */
+    int peekSlot() {
+        return heap[0];
+    }
+
+    /**
+     * Returns the individual of the earliest event.
+     *
+     * @return The individual
+     */
+    Individual peekIndividual() {
+        return individuals[owners[heap[0]]];
+    }
+
+    /**
+     * Removes the earliest event from the heap. Its slot stays readable through
+     * getType, getTime and getIndividual until it is freed.
+     *
+     * @return The slot of the removed event
+     */
+    int pop() {
+        int slot = heap[0];
+        size--;
+        if (size > 0) {
+            siftDown(0, heap[size], heapTimes[size], heapSequences[size]);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the type code of the event in a slot.
+     *
+     * @param slot Event slot
+     * @return Event type code
+     */
+    byte getType(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * Returns the time of the event in a slot.
+     *
+     * @param slot Event slot
+     * @return Event time
+     */
+    double getTime(int slot) {
+        return times[slot];
+    }
+
+    /**
+     * Returns the slot at a position of the heap, to visit every queued event.
+     *
+     * @param i Heap position, between 0 and size() - 1
+     * @return Event slot
+     */
+    int getSlot(int i) {
+        return heap[i];
+    }
+
+    /**
+     * Returns the order in which the event at a position of the heap was scheduled.
+     *
+     * @param i Heap position, between 0 and size() - 1
+     * @return Sequence number
+     */
+    long getSequence(int i) {
+        return heapSequences[i];
+    }
+
+    /**
+     * Returns the individual of the event in a slot.
+     *
+     * @param slot Event slot
+     * @return The individual
+     */
+    Individual getIndividual(int slot) {
+        return individuals[owners[slot]];
+    }
+
+    /**
+     * Returns a popped event slot to the free list.
+     *
+     * @param slot Event slot
+     */
+    void free(int slot) {
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    /**
+     * Takes back the handle of an individual that has no queued events left.
+     *
+     * @param individual The individual
+     */
+    void release(Individual individual) {
+        int handle = individual.getEventHandle();
+        if (handle < 0) return;
+
+        individuals[handle] = null;
+        freeHandles[freeHandleCount++] = handle;
+        individual.setEventHandle(-1);
+    }
+
+    /**
+     * Removes every event of a dead individual, in O(n), and frees their slots and handles.
+     */
+    void removeDead() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = heap[i];
+            Individual individual = individuals[owners[slot]];
+            if (individual.isAlive()) {
+                heap[kept] = slot;
+                heapTimes[kept] = heapTimes[i];
+                heapSequences[kept] = heapSequences[i];
+                kept++;
+            } else {
+                individual.removePendingEvent();
+                if (individual.getPendingEvents() == 0) {
+                    release(individual);
+                }
+                free(slot);
+            }
+        }
+        size = kept;
+
+        // Floyd's heap construction
+        for (int i = (size - 2) >> 2; i >= 0; i--) {
+            siftDown(i, heap[i], heapTimes[i], heapSequences[i]);
+        }
+    }
+
+    /**
+     * Returns the number of queued events.
+     *
+     * @return Store size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the handle of an individual, handing out a new one if needed.
+     *
+     * @param individual The individual
+     * @return Its handle
+     */
+    private int handleOf(Individual individual) {
+        int handle = individual.getEventHandle();
+        if (handle >= 0) return handle;
+
+        if (freeHandleCount == 0) {
+            int capacity = individuals.length;
+            individuals = Arrays.copyOf(individuals, capacity * 2);
+            freeHandles = Arrays.copyOf(freeHandles, capacity * 2);
+            for (int i = 0; i < capacity; i++) {
+                freeHandles[i] = capacity * 2 - 1 - i;
+            }
+            freeHandleCount = capacity;
+        }
+        handle = freeHandles[--freeHandleCount];
+        individuals[handle] = individual;
+        individual.setEventHandle(handle);
+        return handle;
+    }
+
+    /**
+     * Doubles the number of event slots. Only called when every slot is in use.
+     */
+    private void growSlots() {
+        int capacity = times.length;
+        times = Arrays.copyOf(times, capacity * 2);
+        types = Arrays.copyOf(types, capacity * 2);
+        owners = Arrays.copyOf(owners, capacity * 2);
+        heap = Arrays.copyOf(heap, capacity * 2);
+        heapTimes = Arrays.copyOf(heapTimes, capacity * 2);
+        heapSequences = Arrays.copyOf(heapSequences, capacity * 2);
+        freeSlots = Arrays.copyOf(freeSlots, capacity * 2);
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity * 2 - 1 - i;
+        }
+        freeSlotCount = capacity;
+    }
+
+    /**
+     * Checks whether the event at a heap position comes before an event: it is earlier,
+     * or at the same time and scheduled first.
+     *
+     * @param i        Heap position
+     * @param time     Time of the other event
+     * @param sequence Sequence number of the other event
+     * @return true if the event at i is dequeued first
+     */
+    private boolean isBefore(int i, double time, long sequence) {
+        return heapTimes[i] < time || (heapTimes[i] == time && heapSequences[i] < sequence);
+    }
+
+    /**
+     * Moves a slot up from a heap position until its parent comes before it.
+     *
+     * @param i        Starting heap position
+     * @param slot     Event slot
+     * @param time     Event time
+     * @param sequence Event sequence number
+     */
+    private void siftUp(int i, int slot, double time, long sequence) {
+        while (i > 0) {
+            int parent = (i - 1) >> 2;
+            if (isBefore(parent, time, sequence)) break;
+            heap[i] = heap[parent];
+            heapTimes[i] = heapTimes[parent];
+            heapSequences[i] = heapSequences[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+        heapTimes[i] = time;
+        heapSequences[i] = sequence;
+    }
+
+    /**
+     * Moves a slot down from a heap position until none of its children comes before it.
+     *
+     * @param i        Starting heap position
+     * @param slot     Event slot
+     * @param time     Event time
+     * @param sequence Event sequence number
+     */
+    private void siftDown(int i, int slot, double time, long sequence) {
+        while (true) {
+            int first = (i << 2) + 1;
+            if (first >= size) break;
+
+            int min = first;
+            double minTime = heapTimes[first];
+            long minSequence = heapSequences[first];
+            int last = Math.min(first + 4, size);
+            for (int c = first + 1; c < last; c++) {
+                double childTime = heapTimes[c];
+                if (childTime < minTime || (childTime == minTime && heapSequences[c] < minSequence)) {
+                    min = c;
+                    minTime = childTime;
+                    minSequence = heapSequences[c];
+                }
+            }
+            if (minTime > time || (minTime == time && minSequence > sequence)) break;
+
+            heap[i] = heap[min];
+            heapTimes[i] = minTime;
+            heapSequences[i] = minSequence;
+            i = min;
+        }
+        heap[i] = slot;
+        heapTimes[i] = time;
+        heapSequences[i] = sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "EventStore{" +
+                "size=" + size +
+                ", capacity=" + times.length +
+                ", handles=" + (individuals.length - freeHandleCount) +
+                '}';
+    }
+}
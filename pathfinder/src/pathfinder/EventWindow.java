@@ -0,0 +1,497 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Conservative parallel execution of PEC events, one window at a time.
+ *
+ * A window takes every event from the head of the PEC up to a horizon, groups them by
+ * individual, and runs the groups in parallel. Within a group the events run in time
+ * order, on private state only: moves change the individual's path, reproductions
+ * create a child whose own events also run in the window, and deaths end the group.
+ * Everything that touches the population (best path offers, births and deaths) is
+ * recorded, and committed serially in time order once every group has run.
+ *
+ * The horizon keeps this equivalent to running the events one at a time:
+ *  - it is before the next observation, so observations see the same state;
+ *  - it is less than min(delta, ro) after the first event, so no reproduction scheduled
+ *    inside the window falls inside it: the next reproduction of a parent comes at least
+ *    delta later, and the first one of a child at least ro later;
+ *  - the window takes no more reproductions than the population can grow by before an
+ *    epidemic could start, so epidemics, the only events that read every individual,
+ *    always run outside windows.
+ * Events of an individual at equal times run in the order they were first scheduled,
+ * as the calendar queue runs them. Moves draw from one random source per chunk of groups,
+ * so the trajectory differs from a serial run, but the chunks are fixed for a window and
+ * seeded runs stay reproducible.
+ */
+class EventWindow {
+
+    // Smallest number of groups worth handing to a worker
+    private static final int MIN_CHUNK_GROUPS = 64;
+    private static final double NONE = Double.POSITIVE_INFINITY;
+
+    /**
+     * A change to the population made by a window, committed after it runs.
+     */
+    private static final class Outcome {
+        static final byte BIRTH = 0, DEATH = 1, BEST = 2;
+
+        final byte kind;
+        final double time;
+        final Individual individual;
+        final double comfort;
+        final int pathCost;
+        final Path.Node tail;
+        final boolean atEnd;
+
+        Outcome(byte kind, double time, Individual individual) {
+            this(kind, time, individual, 0, 0, null, false);
+        }
+
+        Outcome(byte kind, double time, Individual individual, double comfort, int pathCost, Path.Node tail, boolean atEnd) {
+            this.kind = kind;
+            this.time = time;
+            this.individual = individual;
+            this.comfort = comfort;
+            this.pathCost = pathCost;
+            this.tail = tail;
+            this.atEnd = atEnd;
+        }
+    }
+
+    /**
+     * A run of groups handled by one worker, with its own random source and results.
+     */
+    private static final class Chunk {
+        final SplitMixRandom random;
+        final ArrayList<Outcome> outcomes = new ArrayList<>();
+        // Events left for the PEC, with their type code as kind
+        final ArrayList<Outcome> scheduled = new ArrayList<>();
+        int from, to; // Groups of the chunk
+        int executed; // Events run
+        double lastTime; // Time of the latest event run
+
+        Chunk(SplitMixRandom random) {
+            this.random = random;
+        }
+    }
+
+    private final Population population;
+    private final int tau;
+    private final double lookahead; // Shortest delay before a reproduction
+    private ForkJoinPool pool; // Worker threads, started by the first parallel window, null until then
+    private final Chunk[] chunks;
+
+    // Groups of the current window: the individual and the time of each of its events, NONE if absent
+    private Individual[] groups;
+    private double[] moves;
+    private double[] reproductions;
+    private double[] deaths;
+    private int groupCount;
+
+    // Horizon and best comfort when the current window started
+    private double horizon;
+    private double bestComfort;
+
+    // Number of windows run and of events run in them
+    private long windows;
+    private long windowEvents;
+
+    // Engine metrics, null when disabled
+    private Metrics metrics;
+
+    /**
+     * Constructs a window executor for a population.
+     *
+     * @param population The population the events act on
+     * @param tau        Maximum simulation time
+     * @param workers    Number of worker threads
+     * @param options    Options the random sources of the workers are split from
+     */
+    EventWindow(Population population, int tau, int workers, SimulatorOptions options) {
+        this(population, tau, splitRandoms(workers, options));
+    }
+
+    /**
+     * Constructs a window executor for a population, with given random sources for the workers.
+     *
+     * @param population The population the events act on
+     * @param tau        Maximum simulation time
+     * @param randoms    Random source of each worker thread, one per worker
+     */
+    EventWindow(Population population, int tau, SplitMixRandom[] randoms) {
+        this.population = population;
+        this.tau = tau;
+        this.lookahead = Math.min(population.getDelta(), population.getRo());
+        this.chunks = new Chunk[randoms.length];
+        for (int i = 0; i < randoms.length; i++) {
+            chunks[i] = new Chunk(randoms[i]);
+        }
+
+        groups = new Individual[MIN_CHUNK_GROUPS];
+        moves = new double[MIN_CHUNK_GROUPS];
+        reproductions = new double[MIN_CHUNK_GROUPS];
+        deaths = new double[MIN_CHUNK_GROUPS];
+    }
+
+    /**
+     * Splits off a random source per worker.
+     *
+     * @param workers Number of worker threads
+     * @param options Options the random sources are split from
+     * @return The random sources
+     */
+    private static SplitMixRandom[] splitRandoms(int workers, SimulatorOptions options) {
+        SplitMixRandom[] randoms = new SplitMixRandom[workers];
+        for (int i = 0; i < workers; i++) {
+            randoms[i] = options.splitRandom();
+        }
+        return randoms;
+    }
+
+    /**
+     * Copies the random sources of the workers, in their current state, for a checkpoint.
+     *
+     * @return Copies of the random sources, one per worker
+     */
+    SplitMixRandom[] snapshotRandoms() {
+        SplitMixRandom[] randoms = new SplitMixRandom[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            randoms[i] = new SplitMixRandom(chunks[i].random.getSeed(), chunks[i].random.getGamma());
+        }
+        return randoms;
+    }
+
+    /**
+     * Sets the metrics the events run in windows are counted in.
+     *
+     * @param metrics The metrics, or null to count none
+     */
+    void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Fork-join task running a range of chunks.
+     */
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        /**
+         * Constructs a task for the chunks in [from, to).
+         *
+         * @param from First chunk
+         * @param to   Chunk after the last one
+         */
+        ChunkTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                runChunk(chunks[from]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, mid), new ChunkTask(mid, to));
+        }
+    }
+
+    /**
+     * Runs a window of events from the head of the PEC, if one can be formed.
+     * The head of the PEC must be an event before the next update.
+     *
+     * @param pec The PEC
+     * @return true if a window ran, false if the next event must run on its own
+     */
+    boolean run(Pec pec) {
+        double start = pec.peekNextTime();
+        horizon = Math.min(pec.getNextUpdateTime(), start + lookahead);
+        bestComfort = population.getBestComfort();
+
+        if (!collect(pec)) return false;
+
+        // Split the groups into chunks, fewer for small windows
+        int count = Math.max(1, Math.min(chunks.length, groupCount / MIN_CHUNK_GROUPS));
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = chunks[i];
+            chunk.from = (int) ((long) groupCount * i / count);
+            chunk.to = (int) ((long) groupCount * (i + 1) / count);
+        }
+        if (count == 1) {
+            runChunk(chunks[0]);
+        } else {
+            if (pool == null) {
+                pool = new ForkJoinPool(chunks.length);
+            }
+            pool.invoke(new ChunkTask(0, count));
+        }
+
+        commit(pec, count);
+        windows++;
+        return true;
+    }
+
+    /**
+     * Takes the events of the window from the PEC and groups them by individual.
+     *
+     * @param pec The PEC
+     * @return true if the window holds any event
+     */
+    private boolean collect(Pec pec) {
+        int births = population.getBirthsBeforeEpidemic();
+        groupCount = 0;
+
+        while (true) {
+            pec.skipStaleEvents();
+            if (pec.getQueueSize() == 0) break;
+
+            double time = pec.peekNextTime();
+            if (time >= horizon) break;
+            byte type = pec.peekNextType();
+            if (type == Event.REPRODUCTION) {
+                if (births == 0) break; // The next birth could start an epidemic
+                births--;
+            }
+
+            Individual individual = pec.removeNext();
+            int group = individual.getWindowGroup();
+            if (group < 0) {
+                group = addGroup(individual);
+            }
+            switch (type) {
+                case Event.MOVE:
+                    moves[group] = time;
+                    break;
+                case Event.REPRODUCTION:
+                    reproductions[group] = time;
+                    break;
+                case Event.DEATH:
+                    deaths[group] = time;
+                    break;
+            }
+        }
+        return groupCount > 0;
+    }
+
+    /**
+     * Starts a group for an individual.
+     *
+     * @param individual The individual
+     * @return The group index
+     */
+    private int addGroup(Individual individual) {
+        if (groupCount == groups.length) {
+            int capacity = groups.length * 2;
+            groups = Arrays.copyOf(groups, capacity);
+            moves = Arrays.copyOf(moves, capacity);
+            reproductions = Arrays.copyOf(reproductions, capacity);
+            deaths = Arrays.copyOf(deaths, capacity);
+        }
+        int group = groupCount++;
+        groups[group] = individual;
+        moves[group] = NONE;
+        reproductions[group] = NONE;
+        deaths[group] = NONE;
+        individual.setWindowGroup(group);
+        return group;
+    }
+
+    /**
+     * Runs the groups of a chunk, on a worker thread.
+     *
+     * @param chunk The chunk
+     */
+    private void runChunk(Chunk chunk) {
+        chunk.executed = 0;
+        chunk.lastTime = 0;
+        for (int group = chunk.from; group < chunk.to; group++) {
+            runEvents(groups[group], moves[group], reproductions[group], deaths[group], chunk);
+        }
+    }
+
+    /**
+     * Runs the events of an individual inside the window, in time order.
+     * Only the individual and its children are changed; population changes are recorded.
+     *
+     * @param individual   The individual
+     * @param move         Time of its move, NONE if it has none in the window
+     * @param reproduction Time of its reproduction, NONE if it has none in the window
+     * @param death        Time of its death, NONE if it has none in the window
+     * @param chunk        The chunk recording the outcomes
+     */
+    private void runEvents(Individual individual, double move, double reproduction, double death, Chunk chunk) {
+        while (true) {
+            double time = Math.min(move, Math.min(reproduction, death));
+            if (time == NONE) return;
+
+            chunk.executed++;
+            chunk.lastTime = Math.max(chunk.lastTime, time);
+            if (metrics != null) {
+                metrics.countEvent(time == move ? Event.MOVE : time == reproduction ? Event.REPRODUCTION : Event.DEATH);
+            }
+
+            // Events at equal times run in the order they are first scheduled: move, reproduction, death
+            if (time == move) {
+                if (individual.step(chunk.random)) {
+                    double comfort = individual.getComfort();
+                    boolean atEnd = individual.isAtEnd();
+                    // Best comfort only grows, so a move not above it at the start of the window never improves it
+                    if (comfort > bestComfort || atEnd) {
+                        Path path = individual.getPath();
+                        chunk.outcomes.add(new Outcome(Outcome.BEST, time, individual, comfort, path.getCost(), path.getTail(), atEnd));
+                    }
+                }
+                move = next(Event.MOVE, individual.getMoveTime() + time, individual, chunk);
+            } else if (time == reproduction) {
+                Individual child = individual.spawn();
+                chunk.outcomes.add(new Outcome(Outcome.BIRTH, time, child));
+                schedule(Event.REPRODUCTION, individual.getMoveTime() + time, individual, chunk);
+                double childMove = next(Event.MOVE, child.getMoveTime() + time, child, chunk);
+                double childDeath = next(Event.DEATH, child.getDeathTime() + time, child, chunk);
+                schedule(Event.REPRODUCTION, child.getReproductionTime() + time, child, chunk);
+                runEvents(child, childMove, NONE, childDeath, chunk);
+                reproduction = NONE;
+            } else {
+                chunk.outcomes.add(new Outcome(Outcome.DEATH, time, individual));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the time of an event if it falls inside the window, or leaves it for the PEC.
+     *
+     * @param type       Event type code
+     * @param time       Event time
+     * @param individual The individual involved in the event
+     * @param chunk      The chunk recording the events left for the PEC
+     * @return The event time, or NONE if it was left for the PEC
+     */
+    private double next(byte type, double time, Individual individual, Chunk chunk) {
+        if (time >= 0 && time < horizon && time <= tau) {
+            return time;
+        }
+        schedule(type, time, individual, chunk);
+        return NONE;
+    }
+
+    /**
+     * Leaves an event for the PEC, to schedule once the window is committed.
+     *
+     * @param type       Event type code
+     * @param time       Event time
+     * @param individual The individual involved in the event
+     * @param chunk      The chunk recording the events left for the PEC
+     */
+    private void schedule(byte type, double time, Individual individual, Chunk chunk) {
+        chunk.scheduled.add(new Outcome(type, time, individual));
+    }
+
+    /**
+     * Applies the outcomes of the chunks to the population in time order, then
+     * schedules the events left for the PEC.
+     *
+     * @param pec   The PEC
+     * @param count Number of chunks used
+     */
+    private void commit(Pec pec, int count) {
+        ArrayList<Outcome> outcomes = chunks[0].outcomes;
+        for (int i = 1; i < count; i++) {
+            outcomes.addAll(chunks[i].outcomes);
+            chunks[i].outcomes.clear();
+        }
+        // Stable, so outcomes at equal times keep the order in which a group recorded them
+        outcomes.sort(Comparator.comparingDouble(o -> o.time));
+
+        for (Outcome outcome : outcomes) {
+            switch (outcome.kind) {
+                case Outcome.BIRTH:
+                    population.addIndividual(outcome.individual);
+                    break;
+                case Outcome.DEATH:
+                    outcome.individual.death();
+                    break;
+                case Outcome.BEST:
+                    population.offerBestPath(outcome.individual, outcome.comfort, outcome.pathCost, outcome.tail, outcome.atEnd);
+                    break;
+            }
+        }
+        outcomes.clear();
+
+        int executed = 0;
+        double lastTime = 0;
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = chunks[i];
+            for (Outcome event : chunk.scheduled) {
+                pec.schedule(event.kind, event.time, event.individual);
+            }
+            chunk.scheduled.clear();
+            executed += chunk.executed;
+            lastTime = Math.max(lastTime, chunk.lastTime);
+        }
+        pec.addExecutedEvents(executed, lastTime);
+        windowEvents += executed;
+
+        for (int group = 0; group < groupCount; group++) {
+            groups[group].setWindowGroup(-1);
+            groups[group] = null;
+        }
+    }
+
+    /**
+     * Stops the worker threads once the simulation is over. A later window starts new ones.
+     */
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Gets the number of windows run.
+     *
+     * @return Window count
+     */
+    long getWindows() {
+        return windows;
+    }
+
+    /**
+     * Gets the number of events run in windows.
+     *
+     * @return Event count
+     */
+    long getWindowEvents() {
+        return windowEvents;
+    }
+
+    @Override
+    public String toString() {
+        return "EventWindow{" +
+                "workers=" + chunks.length +
+                ", lookahead=" + lookahead +
+                ", windows=" + windows +
+                ", averageEvents=" + (windows == 0 ? 0 : (double) windowEvents / windows) +
+                '}';
+    }
+}
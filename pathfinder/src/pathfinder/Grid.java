@@ -10,19 +10,201 @@
 package pathfinder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Represents a grid for pathfinding, including start/end points, obstacles, and special cost zones.
  */
 public class Grid {
+    private static final int TILE_SHIFT = 6; // Cost tiles are 64x64 cells
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+    static final int MAX_COST_LEVELS = Character.MAX_VALUE; // Most distinct costs above 1 held as char levels
+
+    // Move directions, indexed by the bits of a move mask: x - 1, x + 1, y - 1, y + 1
+    static final int[] DX = {-1, 1, 0, 0};
+    static final int[] DY = {0, 0, -1, 1};
+
+    // NTH_MOVE[mask * 4 + i] is the direction of the i-th set bit of mask
+    private static final byte[] NTH_MOVE = new byte[16 * 4];
+    static {
+        for (int mask = 0; mask < 16; mask++) {
+            int i = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                if ((mask & (1 << direction)) != 0) {
+                    NTH_MOVE[mask * 4 + i++] = (byte) direction;
+                }
+            }
+        }
+    }
+
     private int m; // Number of columns
     private int n; // Number of rows
     private int xi, yi; // Start coordinates
     private int xf, yf; // End coordinates
-    private int[][] scz; // Special Cost Zones: each zone is [x1, y1, x2, y2, cost]
-    private int[][] obs; // Obstacles: each obstacle is [x, y]
+    private int[] zones; // Special Cost Zones, 5 values each: x1, y1, x2, y2, cost
+    private int zoneCount;
+    private int[] obstacleCoordinates; // Obstacles, 2 values each: x, y, in input order
+    private int obstacleCount;
+    private long[] obstacles; // Obstacle bitset, one bit per cell (see cellIndex)
+    private char[][] costTiles; // Cost level of each cell, by tile; a null tile is all level 0
+    private int[] costLevels; // Cost of each level, costLevels[0] is the default cost 1
+    // Cost of each cell, by tile, instead of levels when the zones have more than MAX_COST_LEVELS
+    // distinct costs above 1; a null tile is all cost 1. Null when levels are used
+    private int[][] costTileValues;
+    private int tileCols; // Number of tiles along the y axis
     private int cmax; // Maximum cost among all special cost zones
 
+    /**
+     * Builds a grid one special cost zone and one obstacle at a time, so a scenario can be
+     * streamed into the grid's indices: obstacles go straight into the obstacle bitset, and
+     * zones are rasterized into the cost lattice when the grid is built.
+     */
+    public static class Builder {
+        private final int n, m, xi, yi, xf, yf;
+        private int[] zones = new int[5 * 8];
+        private int zoneCount;
+        private int[] obstacleCoordinates = new int[2 * 64];
+        private int obstacleCount;
+        private long[] obstacles;
+        private char[][] costTiles;
+        private int[] costLevels;
+
+        /**
+         * Starts building a grid with no special cost zones and no obstacles.
+         *
+         * @param n  Number of rows
+         * @param m  Number of columns
+         * @param xi Start x-coordinate
+         * @param yi Start y-coordinate
+         * @param xf End x-coordinate
+         * @param yf End y-coordinate
+         */
+        public Builder(int n, int m, int xi, int yi, int xf, int yf) {
+            this.n = n;
+            this.m = m;
+            this.xi = xi;
+            this.yi = yi;
+            this.xf = xf;
+            this.yf = yf;
+        }
+
+        /**
+         * Adds a special cost zone.
+         *
+         * @param x1   x-coordinate of a corner
+         * @param y1   y-coordinate of a corner
+         * @param x2   x-coordinate of the opposite corner
+         * @param y2   y-coordinate of the opposite corner
+         * @param cost Cost of moving along the zone's border
+         * @return This builder
+         */
+        public Builder addZone(int x1, int y1, int x2, int y2, int cost) {
+            if (zoneCount * 5 == zones.length) {
+                zones = Arrays.copyOf(zones, zones.length * 2);
+            }
+            int i = zoneCount++ * 5;
+            zones[i] = x1;
+            zones[i + 1] = y1;
+            zones[i + 2] = x2;
+            zones[i + 3] = y2;
+            zones[i + 4] = cost;
+            return this;
+        }
+
+        /**
+         * Adds an obstacle. Obstacles outside the grid are kept, but can never be reached.
+         *
+         * @param x x-coordinate
+         * @param y y-coordinate
+         * @return This builder
+         */
+        public Builder addObstacle(int x, int y) {
+            if (obstacleCount * 2 == obstacleCoordinates.length) {
+                obstacleCoordinates = Arrays.copyOf(obstacleCoordinates, obstacleCoordinates.length * 2);
+            }
+            obstacleCoordinates[obstacleCount * 2] = x;
+            obstacleCoordinates[obstacleCount * 2 + 1] = y;
+            obstacleCount++;
+
+            // Obstacles outside the grid can never be reached, so they are not indexed
+            if (x >= 1 && x <= n && y >= 1 && y <= m) {
+                if (obstacles == null) {
+                    obstacles = newBitset();
+                }
+                int cell = (x - 1) * m + (y - 1);
+                obstacles[cell >>> 6] |= 1L << cell;
+            }
+            return this;
+        }
+
+        /**
+         * Replaces the special cost zones with an array, taken over by the builder.
+         *
+         * @param zones Special cost zones, 5 values each: x1, y1, x2, y2, cost
+         * @param count Number of zones
+         * @return This builder
+         */
+        Builder setZones(int[] zones, int count) {
+            this.zones = zones;
+            this.zoneCount = count;
+            return this;
+        }
+
+        /**
+         * Replaces the obstacles with an array, taken over by the builder.
+         *
+         * @param coordinates Obstacles, 2 values each: x, y
+         * @param count       Number of obstacles
+         * @param bitset      Obstacle bitset of the coordinates, already indexed, or null to index them
+         * @return This builder
+         */
+        Builder setObstacles(int[] coordinates, int count, long[] bitset) {
+            this.obstacleCoordinates = coordinates;
+            this.obstacleCount = 0;
+            if (bitset != null) {
+                this.obstacles = bitset;
+                this.obstacleCount = count;
+            } else {
+                this.obstacles = null;
+                for (int i = 0; i < count; i++) {
+                    addObstacle(coordinates[i * 2], coordinates[i * 2 + 1]);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sets the cost lattice of the zones, already rasterized, so the grid skips rasterization.
+         *
+         * @param costTiles  Cost level of each cell, by tile, as Grid.getCostTiles() returns it
+         * @param costLevels Cost of each level, as Grid.getCostLevels() returns it
+         * @return This builder
+         */
+        Builder setCostLattice(char[][] costTiles, int[] costLevels) {
+            this.costTiles = costTiles;
+            this.costLevels = costLevels;
+            return this;
+        }
+
+        /**
+         * Builds the grid. The builder must not be used afterwards.
+         *
+         * @return The grid
+         */
+        public Grid build() {
+            return new Grid(this);
+        }
+
+        /**
+         * Allocates an obstacle bitset with no obstacles.
+         *
+         * @return The bitset
+         */
+        private long[] newBitset() {
+            return new long[(int) (((long) n * m + 63) >>> 6)];
+        }
+    }
+
     /**
      * Constructs a Grid with specified start/end coordinates, size, special cost zones, and obstacles.
      *
@@ -36,22 +218,68 @@ public class Grid {
      * @param obs Obstacles
      */
     Grid(int xi, int yi, int xf, int yf, int n, int m, int[][] scz, int[][] obs) {
-        this.xi = xi;
-        this.yi = yi;
-        this.xf = xf;
-        this.yf = yf;
-        this.n = n;
-        this.m = m;
-        this.scz = scz;
-        this.obs = obs;
+        this(builder(xi, yi, xf, yf, n, m, scz, obs));
+    }
+
+    /**
+     * Fills a builder with special cost zones and obstacles given as arrays.
+     *
+     * @param xi  Start x-coordinate
+     * @param yi  Start y-coordinate
+     * @param xf  End x-coordinate
+     * @param yf  End y-coordinate
+     * @param n   Number of rows
+     * @param m   Number of columns
+     * @param scz Special cost zones, each [x1, y1, x2, y2, cost]
+     * @param obs Obstacles, each [x, y], or null for none
+     * @return The builder
+     */
+    private static Builder builder(int xi, int yi, int xf, int yf, int n, int m, int[][] scz, int[][] obs) {
+        Builder builder = new Builder(n, m, xi, yi, xf, yf);
+        for (int[] zone : scz) {
+            builder.addZone(zone[0], zone[1], zone[2], zone[3], zone[4]);
+        }
+        if (obs != null) {
+            for (int[] obstacle : obs) {
+                builder.addObstacle(obstacle[0], obstacle[1]);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Constructs a Grid from a builder, taking over its arrays.
+     *
+     * @param builder The builder
+     */
+    private Grid(Builder builder) {
+        this.xi = builder.xi;
+        this.yi = builder.yi;
+        this.xf = builder.xf;
+        this.yf = builder.yf;
+        this.n = builder.n;
+        this.m = builder.m;
+        this.zones = builder.zones;
+        this.zoneCount = builder.zoneCount;
+        this.obstacleCoordinates = builder.obstacleCoordinates;
+        this.obstacleCount = builder.obstacleCount;
+        this.obstacles = builder.obstacles != null ? builder.obstacles : builder.newBitset();
+
+        if (builder.costTiles != null) {
+            this.tileCols = getTileCols(m);
+            this.costTiles = builder.costTiles;
+            this.costLevels = builder.costLevels;
+        } else {
+            rasterizeCosts();
+        }
 
         this.cmax = 0;
-        if (scz.length == 0) {
+        if (zoneCount == 0) {
             cmax = 1;
         } else {
-            for (int[] zone : scz) {
-                if (zone[4] > cmax) {
-                    cmax = zone[4];
+            for (int zone = 0; zone < zoneCount; zone++) {
+                if (zones[zone * 5 + 4] > cmax) {
+                    cmax = zones[zone * 5 + 4];
                 }
             }
         }
@@ -85,42 +313,211 @@ public class Grid {
     public ArrayList<int[]> getValidMoves(int x, int y) {
         ArrayList<int[]> validMoves = new ArrayList<>();
 
+        int mask = getMoveMask(x, y);
+        for (int i = 0; i < Integer.bitCount(mask); i++) {
+            int direction = getNthMove(mask, i);
+            validMoves.add(new int[] {x + DX[direction], y + DY[direction]});
+        }
+
+        return validMoves;
+    }
+
+    /**
+     * Returns the valid moves from the given position as a 4-bit mask, without allocating.
+     * Bit d is set when moving by (DX[d], DY[d]) stays inside the grid and avoids obstacles.
+     *
+     * @param x Current x-coordinate
+     * @param y Current y-coordinate
+     * @return Mask of valid move directions
+     */
+    int getMoveMask(int x, int y) {
+        int mask = 0;
+
         if (x > 1 && !isObstacle(x - 1, y)) {
-            validMoves.add(new int[] {x - 1, y});
+            mask |= 1;
         }
         if (x < n && !isObstacle(x + 1, y)) {
-            validMoves.add(new int[] {x + 1, y});
+            mask |= 2;
         }
         if (y > 1 && !isObstacle(x, y - 1)) {
-            validMoves.add(new int[] {x, y - 1});
+            mask |= 4;
         }
         if (y < m && !isObstacle(x, y + 1)) {
-            validMoves.add(new int[] {x, y + 1});
+            mask |= 8;
         }
 
-        return validMoves;
+        return mask;
+    }
+
+    /**
+     * Returns the direction of the i-th valid move of a move mask, in getValidMoves order.
+     *
+     * @param mask Mask of valid move directions
+     * @param i    Index of the move, between 0 and Integer.bitCount(mask) - 1
+     * @return Move direction, an index into DX and DY
+     */
+    static int getNthMove(int mask, int i) {
+        return NTH_MOVE[mask * 4 + i];
+    }
+
+    /**
+     * Returns the linear index of a cell, row by row: (x - 1) * m + (y - 1).
+     *
+     * @param x x-coordinate, between 1 and n
+     * @param y y-coordinate, between 1 and m
+     * @return Cell index
+     */
+    int cellIndex(int x, int y) {
+        return (x - 1) * m + (y - 1);
+    }
+
+    /**
+     * Returns the x-coordinate of a cell index.
+     *
+     * @param cell Cell index
+     * @return x-coordinate
+     */
+    int getX(int cell) {
+        return cell / m + 1;
+    }
+
+    /**
+     * Returns the y-coordinate of a cell index.
+     *
+     * @param cell Cell index
+     * @return y-coordinate
+     */
+    int getY(int cell) {
+        return cell % m + 1;
     }
 
     /**
      * Checks if the given position is an obstacle.
+     * The lookup is a single bit test on the obstacle bitset built at construction.
      *
-     * @param x x-coordinate
-     * @param y y-coordinate
+     * @param x x-coordinate, between 1 and n
+     * @param y y-coordinate, between 1 and m
      * @return true if (x, y) is an obstacle, false otherwise
      */
-    private boolean isObstacle(int x, int y) {
-        if (obs == null) return false;
+    boolean isObstacle(int x, int y) {
+        int cell = cellIndex(x, y);
+        return (obstacles[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Rasterizes the borders of the special cost zones into the cost lattice.
+     * A move costs the maximum cost among the zones whose border holds its lower endpoint,
+     * so each border cell stores the level of the highest cost zone passing through it.
+     * The lattice is split in 64x64 tiles and only tiles crossed by a border are allocated,
+     * which keeps very large grids with few zones cheap.
+     *
+     * Cells store a char level, indexing the distinct costs, so a tile takes 8 KiB. Zones with
+     * more than MAX_COST_LEVELS distinct costs above 1 have their costs stored as ints instead.
+     */
+    private void rasterizeCosts() {
+        tileCols = getTileCols(m);
+        int tileTotal = getTileRows(n) * tileCols;
+
+        int[] costs = new int[zoneCount];
+        for (int zone = 0; zone < zoneCount; zone++) {
+            costs[zone] = zones[zone * 5 + 4];
+        }
+        costs = Arrays.stream(costs).filter(cost -> cost > 1).distinct().sorted().toArray();
+        if (costs.length > MAX_COST_LEVELS) {
+            costTileValues = new int[tileTotal][];
+        } else {
+            costTiles = new char[tileTotal][];
+            costLevels = new int[costs.length + 1];
+            costLevels[0] = 1;
+            System.arraycopy(costs, 0, costLevels, 1, costs.length);
+        }
+
+        if (costs.length == 0) return;
+
+        for (int zone = 0; zone < zoneCount; zone++) {
+            int x1 = zones[zone * 5], y1 = zones[zone * 5 + 1], x2 = zones[zone * 5 + 2], y2 = zones[zone * 5 + 3];
+            int cost = zones[zone * 5 + 4];
+            if (cost <= 1) continue;
+            // Levels follow the order of the costs, so raising either keeps the highest cost
+            int level = costTileValues != null ? cost : Arrays.binarySearch(costs, cost) + 1;
+
+            // Horizontal borders: x is x1 or x2, y1 <= y <= y2
+            for (int x : new int[] {x1, x2}) {
+                if (x < 1 || x > n) continue;
+                for (int y = Math.max(y1, 1); y <= Math.min(y2, m); y++) {
+                    raiseCostLevel(x, y, level);
+                }
+            }
+            // Vertical borders: y is y1 or y2, x1 <= x <= x2
+            for (int y : new int[] {y1, y2}) {
+                if (y < 1 || y > m) continue;
+                for (int x = Math.max(x1, 1); x <= Math.min(x2, n); x++) {
+                    raiseCostLevel(x, y, level);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cost tiles along the x axis.
+     *
+     * @param n Number of rows
+     * @return Number of tile rows
+     */
+    static int getTileRows(int n) {
+        return (n + TILE_MASK) >> TILE_SHIFT;
+    }
+
+    /**
+     * Returns the number of cost tiles along the y axis.
+     *
+     * @param m Number of columns
+     * @return Number of tile columns
+     */
+    static int getTileCols(int m) {
+        return (m + TILE_MASK) >> TILE_SHIFT;
+    }
+
+    /**
+     * Returns the number of cells of a cost tile.
+     *
+     * @return Cells per tile
+     */
+    static int getTileSize() {
+        return 1 << (2 * TILE_SHIFT);
+    }
 
-        for (int[] obstacle : obs) {
-            if (obstacle[0] == x && obstacle[1] == y) {
-                return true;
+    /**
+     * Raises the cost level of a cell, or its cost when costs are stored directly,
+     * allocating its tile if needed.
+     *
+     * @param x     x-coordinate
+     * @param y     y-coordinate
+     * @param level New cost level or cost, kept only if higher than the current one
+     */
+    private void raiseCostLevel(int x, int y, int level) {
+        int tileIndex = ((x - 1) >> TILE_SHIFT) * tileCols + ((y - 1) >> TILE_SHIFT);
+        int offset = (((x - 1) & TILE_MASK) << TILE_SHIFT) | ((y - 1) & TILE_MASK);
+        if (costTileValues != null) {
+            if (costTileValues[tileIndex] == null) {
+                costTileValues[tileIndex] = new int[1 << (2 * TILE_SHIFT)];
+                Arrays.fill(costTileValues[tileIndex], 1);
             }
+            costTileValues[tileIndex][offset] = Math.max(costTileValues[tileIndex][offset], level);
+            return;
+        }
+
+        if (costTiles[tileIndex] == null) {
+            costTiles[tileIndex] = new char[1 << (2 * TILE_SHIFT)];
+        }
+        if (costTiles[tileIndex][offset] < level) {
+            costTiles[tileIndex][offset] = (char) level;
         }
-        return false;
     }
 
     /**
      * Returns the cost of moving from (xi, yi) to (xf, yf), considering special cost zones.
+     * The cost only depends on the lower endpoint of the move and is read from the cost lattice.
      *
      * @param xi Start x-coordinate
      * @param yi Start y-coordinate
@@ -129,28 +526,18 @@ public class Grid {
      * @return Movement cost
      */
     public int getCost(int xi, int yi, int xf, int yf) {
-        if (scz == null) return 1;
+        int x = Math.min(xi, xf) - 1;
+        int y = Math.min(yi, yf) - 1;
 
-        // Ensure xi <= xf and yi <= yf for comparison
-        if (xi > xf) {
-            xi = xi ^ xf;
-            xf = xi ^ xf;
-            xi = xi ^ xf;
-        }
-        if (yi > yf) {
-            yi = yi ^ yf;
-            yf = yi ^ yf;
-            yi = yi ^ yf;
+        int tileIndex = (x >> TILE_SHIFT) * tileCols + (y >> TILE_SHIFT);
+        int offset = ((x & TILE_MASK) << TILE_SHIFT) | (y & TILE_MASK);
+        if (costTileValues != null) {
+            int[] tile = costTileValues[tileIndex];
+            return tile == null ? 1 : tile[offset];
         }
-
-        int max = 1;
-        for (int[] zone : scz) {
-            if ( zone[4] > max && ( ((xi == zone[0] || xi == zone[2]) && zone[1] <= yi && yi <= zone[3]) ||
-                                    ((yi == zone[1] || yi == zone[3]) && zone[0] <= xi && xi <= zone[2]) ) ) {
-                max = zone[4];
-            }
-        }
-        return max;
+        char[] tile = costTiles[tileIndex];
+        if (tile == null) return 1;
+        return costLevels[tile[offset]];
     }
 
     /**
@@ -190,23 +577,109 @@ public class Grid {
     }
 
     /**
-     * Returns the special cost zones.
+     * Returns a copy of the special cost zones.
      *
-     * @return Special cost zones
+     * @return Special cost zones, each [x1, y1, x2, y2, cost]
      */
     public int[][] getScz() {
+        int[][] scz = new int[zoneCount][];
+        for (int zone = 0; zone < zoneCount; zone++) {
+            scz[zone] = Arrays.copyOfRange(zones, zone * 5, zone * 5 + 5);
+        }
         return scz;
     }
 
     /**
-     * Returns the obstacles.
+     * Returns a copy of the obstacles.
      *
-     * @return Obstacles
+     * @return Obstacles, each [x, y], in the order they were given
      */
     public int[][] getObs() {
+        int[][] obs = new int[obstacleCount][];
+        for (int i = 0; i < obstacleCount; i++) {
+            obs[i] = new int[] {obstacleCoordinates[i * 2], obstacleCoordinates[i * 2 + 1]};
+        }
         return obs;
     }
 
+    /**
+     * Returns the number of special cost zones.
+     *
+     * @return Zone count
+     */
+    int getZoneCount() {
+        return zoneCount;
+    }
+
+    /**
+     * Returns a value of a special cost zone, without copying the zones.
+     *
+     * @param zone  Zone index
+     * @param field 0 to 3 for x1, y1, x2, y2, 4 for the cost
+     * @return The value
+     */
+    int getZoneValue(int zone, int field) {
+        return zones[zone * 5 + field];
+    }
+
+    /**
+     * Returns the number of obstacles, including those outside the grid and repeated ones.
+     *
+     * @return Obstacle count
+     */
+    int getObstacleCount() {
+        return obstacleCount;
+    }
+
+    /**
+     * Returns the x-coordinate of an obstacle, without copying the obstacles.
+     *
+     * @param i Obstacle index
+     * @return x-coordinate
+     */
+    int getObstacleX(int i) {
+        return obstacleCoordinates[i * 2];
+    }
+
+    /**
+     * Returns the y-coordinate of an obstacle, without copying the obstacles.
+     *
+     * @param i Obstacle index
+     * @return y-coordinate
+     */
+    int getObstacleY(int i) {
+        return obstacleCoordinates[i * 2 + 1];
+    }
+
+    /**
+     * Returns the obstacle bitset, one bit per cell, without copying it. It must not be modified.
+     *
+     * @return Obstacle bitset
+     */
+    long[] getObstacleBits() {
+        return obstacles;
+    }
+
+    /**
+     * Returns the cost level of each cell, by 64x64 tile, row of tiles by row of tiles,
+     * without copying it. A null tile is all level 0. It must not be modified.
+     *
+     * @return Cost tiles, or null if the zones have too many distinct costs for levels
+     */
+    char[][] getCostTiles() {
+        return costTiles;
+    }
+
+    /**
+     * Returns the cost of each cost level, without copying it. It must not be modified.
+     *
+     * @return Cost levels, the first one being the default cost 1, or null if the zones
+     *         have too many distinct costs for levels
+     */
+    int[] getCostLevels() {
+        return costLevels;
+    }
+
     /**
      * Returns a string representation of the grid.
      *
@@ -0,0 +1,64 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Event queue backed by a binary heap: O(log n) per operation, whatever the event times.
+ */
+class HeapEventQueue implements EventQueue {
+
+    private PriorityQueue<Event> que;
+
+    /**
+     * Constructs an empty heap event queue.
+     */
+    HeapEventQueue() {
+        que = new PriorityQueue<>((e1, e2) -> e1.isBefore(e2) ? -1 : e2.isBefore(e1) ? 1 : 0);
+    }
+
+    @Override
+    public void offer(Event e) {
+        que.offer(e);
+    }
+
+    @Override
+    public Event peek() {
+        return que.peek();
+    }
+
+    @Override
+    public Event poll() {
+        return que.poll();
+    }
+
+    @Override
+    public void removeIf(Predicate<Event> filter) {
+        que.removeIf(filter);
+    }
+
+    @Override
+    public void forEach(Consumer<Event> action) {
+        que.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return que.size();
+    }
+
+    @Override
+    public String toString() {
+        return que.toString();
+    }
+}
@@ -9,8 +9,7 @@
 
 package pathfinder;
 
-import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 
 /**
  * Represents an individual in the pathfinding population.
@@ -22,29 +21,34 @@ public class Individual {
     private Population population;
     private Grid grid;
 
-    private int pathCost;
-    private ArrayList<int[]> path;
+    private Path path;
 
     private double comfort;
+    private ComfortModel comfortModel; // Computes comfort and event times
+
+    private int id = -1; // Dense id in the population, -1 before it joins
+    private int generation; // Generation of the id when this individual got it
+
+    private int pendingEvents; // Number of events of this individual waiting in the PEC
+    private int eventHandle = -1; // Handle in the PEC event store, -1 when it has none
+    private int windowGroup = -1; // Group in the current PEC event window, -1 when in none
 
     /**
      * Constructs an Individual with specified parameters.
      * Used internally for cloning and reproduction.
      *
-     * @param pathCost   The total cost of the path so far.
-     * @param pathLength The length of the path.
      * @param comfort    The comfort value of the individual.
-     * @param path       The path taken as a list of coordinates.
+     * @param path       The path taken so far.
      * @param population The population this individual belongs to.
      * @param grid       The grid on which the individual moves.
      */
-    private Individual(int pathCost, int pathLength, double comfort, ArrayList<int[]> path, Population population, Grid grid) {
-        this.pathCost = pathCost;
+    private Individual(double comfort, Path path, Population population, Grid grid) {
         this.path = path;
         this.comfort = comfort;
 
         this.population = population;
         this.grid = grid;
+        this.comfortModel = population.getComfortModel(grid);
     }
 
     /**
@@ -54,9 +58,9 @@ public class Individual {
      * @param grid       The grid on which the individual moves.
      */
     Individual(Population population, Grid grid) {
-        this(0, 0, 0, new ArrayList<>(), population, grid);
+        this(0, new Path(grid.cellIndex(grid.getStartCoordinates()[0], grid.getStartCoordinates()[1]), grid.getN() * grid.getM()),
+                population, grid);
 
-        this.path.add(new int[] {grid.getStartCoordinates()[0], grid.getStartCoordinates()[1]});
         updateComfort();
     }
 
@@ -70,21 +74,98 @@ public class Individual {
     }
 
     /**
-     * Calculates the Manhattan distance from the current position to the finish.
+     * Returns the id of this individual in the population.
+     *
+     * @return Population id, or -1 if it never joined.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the generation of the population id held by this individual.
+     *
+     * @return Id generation.
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Assigns a population id to this individual.
+     *
+     * @param id         Population id.
+     * @param generation Current generation of that id.
+     */
+    void setId(int id, int generation) {
+        this.id = id;
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the number of events of this individual waiting in the PEC.
+     *
+     * @return Pending event count.
+     */
+    int getPendingEvents() {
+        return pendingEvents;
+    }
+
+    /**
+     * Records that an event of this individual entered the PEC.
+     */
+    void addPendingEvent() {
+        pendingEvents++;
+    }
+
+    /**
+     * Records that an event of this individual left the PEC.
+     */
+    void removePendingEvent() {
+        pendingEvents--;
+    }
+
+    /**
+     * Returns the handle of this individual in the PEC event store.
+     *
+     * @return Event store handle, or -1 if it has none.
+     */
+    int getEventHandle() {
+        return eventHandle;
+    }
+
+    /**
+     * Sets the handle of this individual in the PEC event store.
+     *
+     * @param eventHandle Event store handle, or -1 to clear it.
+     */
+    void setEventHandle(int eventHandle) {
+        this.eventHandle = eventHandle;
+    }
+
+    /**
+     * Returns the group of this individual in the current PEC event window.
+     *
+     * @return Window group, or -1 if it is in none.
+     */
+    int getWindowGroup() {
+        return windowGroup;
+    }
+
+    /**
+     * Sets the group of this individual in the current PEC event window.
      *
-     * @return Distance to the finish.
+     * @param windowGroup Window group, or -1 to clear it.
      */
-    private int getDistToFinish() {
-        return Math.abs(path.getLast()[0] - grid.getEndCoordinates()[0])
-        + Math.abs(path.getLast()[1] - grid.getEndCoordinates()[1]);
+    void setWindowGroup(int windowGroup) {
+        this.windowGroup = windowGroup;
     }
 
     /**
      * Updates the comfort value based on the current path and cost.
      */
     private void updateComfort() {
-        comfort = Math.pow(1 - ((pathCost - getPathSize() + 2.0) / ((grid.getCmax() - 1.0) * getPathSize() + 3.0)), population.getK()) *
-                Math.pow(1 - getDistToFinish() / (grid.getSize() + 1.0), population.getK());
+        comfort = comfortModel.comfort(path.getCost(), getPathSize(), path.getLast());
     }
 
     /**
@@ -96,6 +177,15 @@ public class Individual {
         return comfort;
     }
 
+    /**
+     * Returns the current path.
+     *
+     * @return The path.
+     */
+    Path getPath() {
+        return path;
+    }
+
     /**
      * Returns the current path size.
      *
@@ -112,18 +202,10 @@ public class Individual {
      * @param y Y coordinate to break at.
      */
     private void chronoBreak(int x, int y) {
-        int cycleStartIndex;
+        int cycleStartIndex = path.indexOf(grid.cellIndex(x, y));
 
-        for (cycleStartIndex = 0; cycleStartIndex < path.size(); cycleStartIndex++) {
-            if (path.get(cycleStartIndex)[0] == x && path.get(cycleStartIndex)[1] == y) {
-                break;
-            }
-        }
-
-        for (int i = path.size() - 1; i > cycleStartIndex; i--) {
-            pathCost -= grid.getCost(path.get(i)[0], path.get(i)[1], path.get(i - 1)[0], path.get(i - 1)[1]);
-            path.remove(i);
-        }
+        // The path keeps the cost of every prefix, so the cost is restored along with it
+        path.truncate(cycleStartIndex + 1);
     }
 
     /**
@@ -132,7 +214,7 @@ public class Individual {
      * @return Death time.
      */
     public double getDeathTime() {
-        return (1 - Math.log(1 - comfort)) * population.getMu();
+        return comfortModel.deathTime(comfort);
     }
 
     /**
@@ -141,7 +223,7 @@ public class Individual {
      * @return Move time.
      */
     public double getMoveTime() {
-        return (1 - Math.log(comfort)) * population.getDelta();
+        return comfortModel.moveTime(comfort);
     }
 
     /**
@@ -150,7 +232,7 @@ public class Individual {
      * @return Reproduction time.
      */
     public double getReproductionTime() {
-        return (1 - Math.log(comfort)) * population.getRo();
+        return comfortModel.reproductionTime(comfort);
     }
 
     /**
@@ -166,40 +248,49 @@ public class Individual {
      * and updates the population's best path if necessary.
      */
     public void move() {
-        ArrayList<int[]> validMoves = grid.getValidMoves(path.getLast()[0], path.getLast()[1]);
+        if (step(population.getRandom())) {
+            population.offerBestPath(this, comfort, path.getCost(), path.getTail(), isAtEnd());
+        }
+    }
 
-        int randomIndex = (int) (Math.random() * validMoves.size());
-        int[] nextMove = validMoves.get(randomIndex);
-        int[] newPos = new int[] {nextMove[0], nextMove[1]};
+    /**
+     * Moves the individual to a new position and updates path and comfort,
+     * without touching the population.
+     *
+     * @param random Random source of the move.
+     * @return true if the individual moved, false if it is walled in.
+     */
+    boolean step(RandomGenerator random) {
+        int x = grid.getX(path.getLast());
+        int y = grid.getY(path.getLast());
+        int validMoves = grid.getMoveMask(x, y);
+        if (validMoves == 0) return false; // Walled in, nowhere to go
+
+        int randomIndex = random.nextInt(Integer.bitCount(validMoves));
+        int direction = Grid.getNthMove(validMoves, randomIndex);
+        int newX = x + Grid.DX[direction];
+        int newY = y + Grid.DY[direction];
+        int newPos = grid.cellIndex(newX, newY);
 
         if (path.contains(newPos)) {
             // If the new position is already in the path, delete cycle
-            chronoBreak(newPos[0], newPos[1]);
+            chronoBreak(newX, newY);
         }
         else {
-            pathCost += grid.getCost(path.getLast()[0], path.getLast()[1], nextMove[0], nextMove[1]);
-            path.add(new int[] {newPos[0], newPos[1]});
+            path.add(newPos, grid.getCost(x, y, newX, newY));
         }
 
         updateComfort();
+        return true;
+    }
 
-        if (comfort > population.getBestComfort()) {
-            population.setBestPathCost(pathCost);
-            population.setBestPath(path);
-            population.setBestComfort(comfort);
-        }
-
-        if (path.getLast()[0] == grid.getEndCoordinates()[0] && path.getLast()[1] == grid.getEndCoordinates()[1]) {
-            if (!population.isPathComplete()) {
-                population.setIsPathComplete(true);
-                population.setBestPathCost(pathCost);
-                population.setBestPath(path);
-            }
-            else if (pathCost < population.getBestPathCost()) {
-                population.setBestPathCost(pathCost);
-                population.setBestPath(path);
-            }
-        }
+    /**
+     * Checks if the individual is at the final point.
+     *
+     * @return true if the last cell of the path is the final point.
+     */
+    boolean isAtEnd() {
+        return comfortModel.isEnd(path.getLast());
     }
 
     /**
@@ -208,14 +299,49 @@ public class Individual {
      * @return The new child individual.
      */
     public Individual reproduce() {
-        Individual child = new Individual(pathCost, getPathSize(), comfort, new ArrayList<int[]>(path), population, grid);
+        Individual child = spawn();
+        population.addIndividual(child);
+
+        return child;
+    }
 
+    /**
+     * Creates a child individual without adding it to the population.
+     *
+     * @return The new child individual.
+     */
+    Individual spawn() {
         int lastPosIndex = (int) Math.ceil(getPathSize() * (0.9 + this.comfort * 0.1));
 
-        child.chronoBreak(path.get(lastPosIndex - 1)[0], path.get(lastPosIndex - 1)[1]);
-        population.addIndividual(child);
+        // A path never repeats a cell, so breaking at the cell at lastPosIndex - 1 keeps exactly
+        // the first lastPosIndex cells: the child shares that prefix with its parent
+        return new Individual(comfort, new Path(path, lastPosIndex), population, grid);
+    }
 
-        return child;
+    /**
+     * Creates a copy of this individual in another population on the same grid.
+     * The copy shares this individual's path nodes, which are immutable, so it can
+     * be handed over to a population run by another thread.
+     *
+     * @param population The population the copy belongs to.
+     * @return The copy, not yet added to the population.
+     */
+    Individual copyTo(Population population) {
+        return new Individual(comfort, new Path(path), population, grid);
+    }
+
+    /**
+     * Recreates an individual from a checkpoint. The comfort is the one saved, not
+     * recomputed, since a child keeps its parent's comfort until it first moves.
+     *
+     * @param population The population the individual belongs to.
+     * @param grid The grid the individual moves on.
+     * @param tail Last node of its path.
+     * @param comfort Its comfort.
+     * @return The individual, not yet added to the population.
+     */
+    static Individual restore(Population population, Grid grid, Path.Node tail, double comfort) {
+        return new Individual(comfort, new Path(tail, grid.getN() * grid.getM()), population, grid);
     }
 
     /**
@@ -225,14 +351,11 @@ public class Individual {
      */
     @Override
     public String toString() {
-        String pathString = path.stream()
-            .map(coord -> "(" + coord[0] + ", " + coord[1] + ")")
-            .collect(Collectors.joining(", ", "[", "]"));
         return "Individual{" +
-                "pathCost=" + pathCost +
+                "pathCost=" + path.getCost() +
                 ", pathLength=" + path.size() +
                 ", comfort=" + comfort +
-                ", path=" + pathString +
+                ", path=" + path.toString(grid) +
                 '}';
     }
 }
@@ -0,0 +1,238 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs a single simulation with its population split into islands, one thread per island.
+ *
+ * Each island is a Simulator with its own PEC, population and random source, holding
+ * an even share of the initial and maximum population sizes, and all islands share
+ * the grid. Islands only interact through migration: every few observations an island
+ * sends copies of its fittest individuals to the next island of a ring, through that
+ * island's lock-free inbox, and at every observation it takes in whatever reached its
+ * own inbox. Migrants share their path nodes with the individuals they were copied
+ * from, so a migration costs a few allocations whatever the path lengths.
+ *
+ * Islands run at their own pace, so which migrants an island sees depends on thread
+ * scheduling, and seeded island runs are not reproducible.
+ *
+ * Measured on one core, at equal wall time on an 80x80 grid, four islands found paths
+ * about 12% cheaper than a single population and 3% cheaper than the best of four
+ * replicas. The gain on several cores, where islands also run in parallel, is unmeasured.
+ */
+public class IslandModel {
+
+    /**
+     * An island: a simulator and the inbox other islands send migrants to.
+     */
+    private static class Island {
+        final Simulator simulator;
+        final ConcurrentLinkedQueue<Individual> inbox = new ConcurrentLinkedQueue<>();
+        final int[] fittest; // Ids of the migrants, reused across migrations
+        Island next; // Island migrants are sent to
+        int observations;
+        int immigrants; // Individuals received from other islands
+        SimulationResult result;
+        Throwable failure;
+
+        Island(Simulator simulator, int migrants) {
+            this.simulator = simulator;
+            this.fittest = new int[migrants];
+        }
+    }
+
+    private Island[] islands;
+    private int migrationInterval;
+    private int migrants;
+    private int v, vmax; // Sizes of the whole population
+    private long wallTime; // Nanoseconds taken by the last run
+
+    /**
+     * Constructs an island model of a scenario.
+     *
+     * @param scenario The grid, shared by the islands, and the population parameters, whose
+     *                 initial and maximum population sizes are split among the islands
+     * @param options  Engine options, including the number of islands and the migration settings
+     */
+    public IslandModel(Scenario scenario, SimulatorOptions options)
+    {
+        Grid grid = scenario.getGrid();
+        int tau = scenario.getTau(), k = scenario.getK(), mu = scenario.getMu(), delta = scenario.getDelta(), ro = scenario.getRo();
+        int count = options.getIslands();
+        this.v = scenario.getV();
+        this.vmax = scenario.getVmax();
+        this.migrationInterval = options.getMigrationInterval();
+        this.migrants = options.getMigrants();
+
+        islands = new Island[count];
+        for (int i = 0; i < count; i++) {
+            int islandV = share(v, count, i);
+            int islandVmax = Math.max(1, share(vmax, count, i));
+            Simulator simulator = new Simulator(grid, tau, islandV, islandVmax, k, mu, delta, ro, options);
+            Island island = new Island(simulator, migrants);
+            simulator.setObservationListener(s -> observe(island));
+            islands[i] = island;
+        }
+        for (int i = 0; i < count; i++) {
+            islands[i].next = islands[(i + 1) % count];
+        }
+    }
+
+    /**
+     * Returns the share of a total given to an island, spreading the remainder over the first islands.
+     *
+     * @param total  Total to split
+     * @param count  Number of islands
+     * @param island Island index
+     * @return The island's share
+     */
+    private static int share(int total, int count, int island)
+    {
+        return total / count + (island < total % count ? 1 : 0);
+    }
+
+    /**
+     * Called on an island's thread at each of its observations: takes in the migrants that
+     * reached the island and, every migrationInterval observations, sends out its fittest.
+     *
+     * @param island The island
+     */
+    private void observe(Island island)
+    {
+        Individual immigrant;
+        while ((immigrant = island.inbox.poll()) != null) {
+            island.simulator.immigrate(immigrant);
+            island.immigrants++;
+        }
+
+        if (migrants == 0 || ++island.observations % migrationInterval != 0 || island.next == island) return;
+
+        Population population = island.simulator.getPopulation();
+        Population target = island.next.simulator.getPopulation();
+        int selected = population.getKFittestIndividuals(migrants, island.fittest);
+        for (int i = 0; i < selected; i++) {
+            island.next.inbox.offer(population.getIndividual(island.fittest[i]).copyTo(target));
+        }
+    }
+
+    /**
+     * Runs every island to the end, each on its own thread.
+     *
+     * @return The outcome of each island, in island order
+     * @throws IllegalStateException if an island failed or the wait was interrupted
+     */
+    public SimulationResult[] run()
+    {
+        Thread[] threads = new Thread[islands.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < islands.length; i++) {
+            Island island = islands[i];
+            threads[i] = new Thread(() -> {
+                try {
+                    island.result = island.simulator.simulate();
+                } catch (RuntimeException | Error e) {
+                    island.failure = e;
+                }
+            }, "island-" + i);
+            threads[i].start();
+        }
+
+        SimulationResult[] results = new SimulationResult[islands.length];
+        for (int i = 0; i < islands.length; i++) {
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the islands", e);
+            }
+            if (islands[i].failure != null) {
+                throw new IllegalStateException("Island " + i + " failed", islands[i].failure);
+            }
+            results[i] = islands[i].result;
+        }
+        wallTime = System.nanoTime() - start;
+        return results;
+    }
+
+    /**
+     * Returns the best outcome among the islands of the last run.
+     *
+     * @return The best result
+     */
+    public SimulationResult getBest()
+    {
+        SimulationResult best = islands[0].result;
+        for (Island island : islands) {
+            if (island.result.isBetterThan(best)) {
+                best = island.result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Prints the configuration of the simulation, with the sizes of the whole population.
+     */
+    public void printConfig()
+    {
+        islands[0].simulator.printConfig(v, vmax);
+    }
+
+    /**
+     * Prints the outcome of the last run: the outcome of each island and the best path overall.
+     */
+    public void printSummary()
+    {
+        long events = 0;
+        StringBuilder perIsland = new StringBuilder();
+        for (int i = 0; i < islands.length; i++) {
+            SimulationResult result = islands[i].result;
+            events += result.getEvents();
+            perIsland.append("\n\t\tIsland ").append(i).append(":\t\t\t")
+                    .append(result.isPathComplete() ? "cost " + result.getBestPathCost() : "comfort " + result.getBestComfort())
+                    .append(", ").append(result.getEvents()).append(" events, ")
+                    .append(islands[i].immigrants).append(" immigrants");
+        }
+
+        SimulationResult best = getBest();
+        boolean isCost = best.isPathComplete();
+        String bestPathString = best.getBestPath() == null ? "[]" : best.getBestPath().toString(islands[0].simulator.getGrid());
+        double seconds = wallTime / 1e9;
+
+        String output =
+            "Islands:\t\t\t" + islands.length + ", " + migrants + " migrants every " + migrationInterval + " observations\n\t\t" +
+                    "Wall time:\t\t\t" + String.format(Locale.ROOT, "%.3f s", seconds) + "\n\t\t" +
+                    "Realized events:\t\t" + events + String.format(Locale.ROOT, " (%.0f per second)", events / seconds) +
+                    perIsland + "\n\n" +
+            "Best fit individual:\t" + bestPathString + " " +
+            "with " + (isCost ? "cost" : "comfort") + ": " + (isCost ? best.getBestPathCost() : best.getBestComfort()) + "\n";
+
+        System.out.println(output);
+    }
+
+    /**
+     * Returns a string representation of the island model.
+     *
+     * @return String describing the island model
+     */
+    @Override
+    public String toString()
+    {
+        return "IslandModel{" +
+                "islands=" + islands.length +
+                ", migrationInterval=" + migrationInterval +
+                ", migrants=" + migrants +
+                ", wallTime=" + wallTime +
+                '}';
+    }
+}
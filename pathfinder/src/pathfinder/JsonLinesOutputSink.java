@@ -0,0 +1,112 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.Writer;
+
+/**
+ * Output sink writing one JSON object per line: a "config" record, an "observation"
+ * record per observation and a "result" record. Paths are arrays of [x, y] pairs,
+ * and the best path cost is null until the final point is hit.
+ */
+class JsonLinesOutputSink extends OutputSink {
+
+    // Record length past which a long configuration is written out in pieces
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+
+    /**
+     * Constructs a JSON Lines sink.
+     * @param out The writer the records are written to
+     */
+    JsonLinesOutputSink(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void writeConfig(Grid grid, int tau, int v, int vmax, int k, int mu, int delta, int ro) {
+        record.append("{\"type\":\"config\",\"n\":").append(grid.getN())
+                .append(",\"m\":").append(grid.getM())
+                .append(",\"start\":[").append(grid.getStartCoordinates()[0]).append(',').append(grid.getStartCoordinates()[1])
+                .append("],\"end\":[").append(grid.getEndCoordinates()[0]).append(',').append(grid.getEndCoordinates()[1])
+                .append("],\"tau\":").append(tau)
+                .append(",\"v\":").append(v)
+                .append(",\"vmax\":").append(vmax)
+                .append(",\"k\":").append(k)
+                .append(",\"mu\":").append(mu)
+                .append(",\"delta\":").append(delta)
+                .append(",\"ro\":").append(ro)
+                .append(",\"specialCostZones\":[");
+        for (int zone = 0; zone < grid.getZoneCount(); zone++) {
+            if (zone > 0) record.append(',');
+            record.append('[');
+            for (int field = 0; field < 5; field++) {
+                if (field > 0) record.append(',');
+                record.append(grid.getZoneValue(zone, field));
+            }
+            record.append(']');
+        }
+        record.append("],\"obstacles\":[");
+        for (int i = 0; i < grid.getObstacleCount(); i++) {
+            if (i > 0) record.append(',');
+            record.append('[').append(grid.getObstacleX(i)).append(',').append(grid.getObstacleY(i)).append(']');
+            if (record.length() >= FLUSH_THRESHOLD) emit();
+        }
+        record.append("]}\n");
+        emit();
+    }
+
+    @Override
+    public void writeObservation(Grid grid, int observation, double time, int events, int populationSize,
+                                 boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append("{\"type\":\"observation\",\"observation\":").append(observation)
+                .append(",\"time\":").append(time)
+                .append(",\"events\":").append(events)
+                .append(",\"populationSize\":").append(populationSize);
+        appendBest(grid, pathComplete, bestPath, bestPathCost, bestComfort);
+        record.append("}\n");
+        emit();
+    }
+
+    @Override
+    public void writeResult(Grid grid, boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append("{\"type\":\"result\"");
+        appendBest(grid, pathComplete, bestPath, bestPathCost, bestComfort);
+        record.append("}\n");
+        emit();
+    }
+
+    /**
+     * Appends the fields describing the best path.
+     * @param grid The grid
+     * @param pathComplete Whether the final point has been hit
+     * @param bestPath The best path, or null
+     * @param bestPathCost Cost of the best path
+     * @param bestComfort Comfort of the best path
+     */
+    private void appendBest(Grid grid, boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append(",\"pathComplete\":").append(pathComplete)
+                .append(",\"bestPathCost\":");
+        if (pathComplete) {
+            record.append(bestPathCost);
+        } else {
+            record.append("null");
+        }
+        record.append(",\"bestComfort\":").append(bestComfort)
+                .append(",\"bestPath\":[");
+        if (bestPath != null) {
+            int[] cells = bestPath.toArray();
+            for (int i = 0; i < cells.length; i++) {
+                if (i > 0) record.append(',');
+                record.append('[').append(grid.getX(cells[i])).append(',').append(grid.getY(cells[i])).append(']');
+            }
+        }
+        record.append(']');
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Engine metrics of a simulation: events run by type, PEC and epidemic activity,
+ * the path length distribution, the allocation rate and the time spent per subsystem.
+ *
+ * The PEC, the population and the event window hold a reference to the metrics, null
+ * when metrics are disabled, so a disabled registry costs one null check per event.
+ * Counters are LongAdders, since window workers count events concurrently and JMX
+ * reads them from its own threads. Everything that needs a pass over the population
+ * or a read of the PEC is taken by observe(), on the simulation thread.
+ */
+public class Metrics implements MetricsMXBean {
+
+    private final Pec pec;
+    private final Population population;
+
+    // Events run, and nanoseconds spent running them one at a time, by event type code
+    private final LongAdder[] events = {new LongAdder(), new LongAdder(), new LongAdder()};
+    private final LongAdder[] eventNanos = {new LongAdder(), new LongAdder(), new LongAdder()};
+    private final LongAdder epidemics = new LongAdder();
+    private final LongAdder epidemicNanos = new LongAdder();
+    private final LongAdder compactionNanos = new LongAdder();
+    private final LongAdder windowNanos = new LongAdder();
+
+    // Wall time and allocated bytes when the simulation started
+    private long startNanos;
+    private long startBytes;
+
+    // Taken at the last observation
+    private volatile int observation = -1;
+    private volatile double time;
+    private volatile long lastNanos;
+    private volatile double[] rates = new double[3];
+    private volatile long skipped;
+    private volatile int queueDepth;
+    private volatile int staleEvents;
+    private volatile int compactions;
+    private volatile int populationSize;
+    private volatile double pathLengthMean;
+    private volatile int pathLengthP50, pathLengthP90, pathLengthMax;
+    private volatile long allocatedBytes = -1;
+    private volatile double allocationRate = -1;
+    private long[] lastEvents = new long[3];
+
+    private ObjectName name;
+
+    /**
+     * Constructs the metrics of a simulation.
+     * @param pec The PEC of the simulation
+     * @param population The population of the simulation
+     */
+    Metrics(Pec pec, Population population) {
+        this.pec = pec;
+        this.population = population;
+    }
+
+    /**
+     * Marks the start of the simulation, on the simulation thread. Rates and allocations
+     * are measured from this point.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+        startBytes = currentThreadAllocatedBytes();
+    }
+
+    /**
+     * Records an event run one at a time.
+     * @param type The event type code
+     * @param nanos Nanoseconds it took
+     */
+    void recordEvent(byte type, long nanos) {
+        events[type].increment();
+        eventNanos[type].add(nanos);
+    }
+
+    /**
+     * Counts an event run in a window. Safe to call from the window workers.
+     * @param type The event type code
+     */
+    void countEvent(byte type) {
+        events[type].increment();
+    }
+
+    /**
+     * Records an epidemic.
+     * @param nanos Nanoseconds it took
+     */
+    void recordEpidemic(long nanos) {
+        epidemics.increment();
+        epidemicNanos.add(nanos);
+    }
+
+    /**
+     * Records a step of a sweep spread over births, started by an earlier epidemic.
+     * @param nanos Nanoseconds it took
+     */
+    void recordSweep(long nanos) {
+        epidemicNanos.add(nanos);
+    }
+
+    /**
+     * Records a compaction of the PEC.
+     * @param nanos Nanoseconds it took
+     */
+    void recordCompaction(long nanos) {
+        compactionNanos.add(nanos);
+    }
+
+    /**
+     * Records a window of events run in parallel.
+     * @param nanos Nanoseconds it took
+     */
+    void recordWindow(long nanos) {
+        windowNanos.add(nanos);
+    }
+
+    /**
+     * Takes the rates, gauges and path length distribution, on the simulation thread.
+     * @param observation Number of the observation
+     */
+    void observe(int observation) {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastNanos) / 1e9;
+
+        double[] rates = new double[3];
+        for (int type = 0; type < 3; type++) {
+            long count = events[type].sum();
+            rates[type] = (count - lastEvents[type]) / seconds;
+            lastEvents[type] = count;
+        }
+        this.rates = rates;
+
+        int[] lengths = population.getPathSizes();
+        Arrays.sort(lengths);
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        pathLengthMean = lengths.length == 0 ? 0 : (double) total / lengths.length;
+        pathLengthP50 = percentile(lengths, 0.5);
+        pathLengthP90 = percentile(lengths, 0.9);
+        pathLengthMax = lengths.length == 0 ? 0 : lengths[lengths.length - 1];
+
+        long bytes = currentThreadAllocatedBytes();
+        if (bytes >= 0 && startBytes >= 0) {
+            allocationRate = (bytes - startBytes - Math.max(0, allocatedBytes)) / seconds;
+            allocatedBytes = bytes - startBytes;
+        }
+
+        skipped = pec.getSkippedEvents();
+        queueDepth = pec.getQueueSize();
+        staleEvents = pec.getStaleEvents();
+        compactions = pec.getCompactions();
+        populationSize = population.getSize();
+        time = pec.getTime();
+        lastNanos = now;
+        this.observation = observation;
+    }
+
+    /**
+     * Returns a percentile of sorted values, by the nearest-rank method.
+     * @param sorted Sorted values
+     * @param p Percentile, in (0, 1]
+     * @return The percentile, 0 if there are no values
+     */
+    private static int percentile(int[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread, where the JVM measures them.
+     * @return Bytes, -1 if not measured
+     */
+    private static long currentThreadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, as pathfinder:type=Metrics,name=&lt;name&gt;.
+     * @param name Name of the simulation
+     * @throws IllegalStateException if the registration fails
+     */
+    void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            this.name = new ObjectName("pathfinder:type=Metrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, this.name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they were registered.
+     */
+    void unregister() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // Already gone
+        }
+        name = null;
+    }
+
+    /**
+     * Returns every metric by attribute name, in a fixed order, for dumps.
+     * @return The metrics
+     */
+    Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("observation", getObservation());
+        values.put("time", getTime());
+        values.put("wallSeconds", getWallSeconds());
+        values.put("moveEvents", getMoveEvents());
+        values.put("reproductionEvents", getReproductionEvents());
+        values.put("deathEvents", getDeathEvents());
+        values.put("movesPerSecond", getMovesPerSecond());
+        values.put("reproductionsPerSecond", getReproductionsPerSecond());
+        values.put("deathsPerSecond", getDeathsPerSecond());
+        values.put("staleEventsSkipped", getStaleEventsSkipped());
+        values.put("queueDepth", getQueueDepth());
+        values.put("staleEvents", getStaleEvents());
+        values.put("compactions", getCompactions());
+        values.put("epidemics", getEpidemics());
+        values.put("populationSize", getPopulationSize());
+        values.put("pathLengthMean", getPathLengthMean());
+        values.put("pathLengthP50", getPathLengthP50());
+        values.put("pathLengthP90", getPathLengthP90());
+        values.put("pathLengthMax", getPathLengthMax());
+        values.put("allocatedBytes", getAllocatedBytes());
+        values.put("allocationRate", getAllocationRate());
+        values.put("moveMillis", getMoveMillis());
+        values.put("reproductionMillis", getReproductionMillis());
+        values.put("deathMillis", getDeathMillis());
+        values.put("epidemicMillis", getEpidemicMillis());
+        values.put("compactionMillis", getCompactionMillis());
+        values.put("windowMillis", getWindowMillis());
+        return values;
+    }
+
+    @Override
+    public int getObservation() {
+        return observation;
+    }
+
+    @Override
+    public double getTime() {
+        return time;
+    }
+
+    @Override
+    public double getWallSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    @Override
+    public long getMoveEvents() {
+        return events[Event.MOVE].sum();
+    }
+
+    @Override
+    public long getReproductionEvents() {
+        return events[Event.REPRODUCTION].sum();
+    }
+
+    @Override
+    public long getDeathEvents() {
+        return events[Event.DEATH].sum();
+    }
+
+    @Override
+    public double getMovesPerSecond() {
+        return rates[Event.MOVE];
+    }
+
+    @Override
+    public double getReproductionsPerSecond() {
+        return rates[Event.REPRODUCTION];
+    }
+
+    @Override
+    public double getDeathsPerSecond() {
+        return rates[Event.DEATH];
+    }
+
+    @Override
+    public long getStaleEventsSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public int getStaleEvents() {
+        return staleEvents;
+    }
+
+    @Override
+    public int getCompactions() {
+        return compactions;
+    }
+
+    @Override
+    public long getEpidemics() {
+        return epidemics.sum();
+    }
+
+    @Override
+    public int getPopulationSize() {
+        return populationSize;
+    }
+
+    @Override
+    public double getPathLengthMean() {
+        return pathLengthMean;
+    }
+
+    @Override
+    public int getPathLengthP50() {
+        return pathLengthP50;
+    }
+
+    @Override
+    public int getPathLengthP90() {
+        return pathLengthP90;
+    }
+
+    @Override
+    public int getPathLengthMax() {
+        return pathLengthMax;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    @Override
+    public double getMoveMillis() {
+        return eventNanos[Event.MOVE].sum() / 1e6;
+    }
+
+    @Override
+    public double getReproductionMillis() {
+        return eventNanos[Event.REPRODUCTION].sum() / 1e6;
+    }
+
+    @Override
+    public double getDeathMillis() {
+        return eventNanos[Event.DEATH].sum() / 1e6;
+    }
+
+    @Override
+    public double getEpidemicMillis() {
+        return epidemicNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getCompactionMillis() {
+        return compactionNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getWindowMillis() {
+        return windowNanos.sum() / 1e6;
+    }
+
+    /**
+     * Returns a string representation of the metrics.
+     * @return String describing the metrics
+     */
+    @Override
+    public String toString() {
+        return "Metrics" + snapshot();
+    }
+}
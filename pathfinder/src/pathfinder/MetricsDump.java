@@ -0,0 +1,105 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Periodic dump of the engine metrics to a file, one record per observation:
+ * CSV with a header line, or JSON Lines when the file name ends in .json or .jsonl.
+ */
+class MetricsDump implements AutoCloseable {
+
+    private final Writer out;
+    private final boolean json;
+    private boolean headerWritten;
+
+    /**
+     * Opens a dump file, replacing any existing one.
+     * @param file Path of the file
+     * @throws UncheckedIOException if the file cannot be opened
+     */
+    MetricsDump(String file) {
+        String lower = file.toLowerCase(Locale.ROOT);
+        this.json = lower.endsWith(".json") || lower.endsWith(".jsonl");
+        try {
+            this.out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open metrics file " + file, e);
+        }
+    }
+
+    /**
+     * Writes a record with the current metrics.
+     * @param metrics The metrics, taken at the current observation
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    void write(Metrics metrics) {
+        Map<String, Number> values = metrics.snapshot();
+        StringBuilder line = new StringBuilder();
+        try {
+            if (json) {
+                line.append('{');
+                for (Map.Entry<String, Number> entry : values.entrySet()) {
+                    if (line.length() > 1) line.append(',');
+                    line.append('"').append(entry.getKey()).append("\":").append(format(entry.getValue(), "null"));
+                }
+                line.append("}\n");
+            } else {
+                if (!headerWritten) {
+                    out.write(String.join(",", values.keySet()) + "\n");
+                    headerWritten = true;
+                }
+                for (Number value : values.values()) {
+                    if (line.length() > 0) line.append(',');
+                    line.append(format(value, ""));
+                }
+                line.append('\n');
+            }
+            out.write(line.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write metrics", e);
+        }
+    }
+
+    /**
+     * Formats a metric value, without a locale-dependent decimal separator.
+     * @param value The value
+     * @param missing Text written for values that are not finite
+     * @return The formatted value
+     */
+    private static String format(Number value, String missing) {
+        if (value instanceof Double) {
+            double d = value.doubleValue();
+            return Double.isFinite(d) ? String.format(Locale.ROOT, "%.3f", d) : missing;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Flushes and closes the file.
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write metrics", e);
+        }
+    }
+}
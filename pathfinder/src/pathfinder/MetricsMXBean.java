@@ -0,0 +1,181 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+/**
+ * Management interface of the engine metrics of a simulation, as exposed through JMX.
+ *
+ * Counters and times are live. Rates, gauges and the path length distribution are
+ * taken at each observation, on the simulation thread, and hold until the next one.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Gets the number of the last observation.
+     * @return Observation number, -1 before the first one
+     */
+    int getObservation();
+
+    /**
+     * Gets the simulation time of the last observation.
+     * @return Simulation time
+     */
+    double getTime();
+
+    /**
+     * Gets the wall time since the simulation started.
+     * @return Seconds
+     */
+    double getWallSeconds();
+
+    /**
+     * Gets the number of move events run.
+     * @return Event count
+     */
+    long getMoveEvents();
+
+    /**
+     * Gets the number of reproduction events run.
+     * @return Event count
+     */
+    long getReproductionEvents();
+
+    /**
+     * Gets the number of death events run.
+     * @return Event count
+     */
+    long getDeathEvents();
+
+    /**
+     * Gets the rate of move events between the last two observations.
+     * @return Events per second of wall time
+     */
+    double getMovesPerSecond();
+
+    /**
+     * Gets the rate of reproduction events between the last two observations.
+     * @return Events per second of wall time
+     */
+    double getReproductionsPerSecond();
+
+    /**
+     * Gets the rate of death events between the last two observations.
+     * @return Events per second of wall time
+     */
+    double getDeathsPerSecond();
+
+    /**
+     * Gets the number of stale events dropped from the head of the PEC.
+     * @return Event count
+     */
+    long getStaleEventsSkipped();
+
+    /**
+     * Gets the number of events in the PEC, stale ones included.
+     * @return Queue depth
+     */
+    int getQueueDepth();
+
+    /**
+     * Gets the number of queued events whose individual is dead.
+     * @return Event count
+     */
+    int getStaleEvents();
+
+    /**
+     * Gets the number of times the PEC was compacted.
+     * @return Compaction count
+     */
+    int getCompactions();
+
+    /**
+     * Gets the number of epidemics started.
+     * @return Epidemic count
+     */
+    long getEpidemics();
+
+    /**
+     * Gets the population size.
+     * @return Number of individuals
+     */
+    int getPopulationSize();
+
+    /**
+     * Gets the mean path length of the population.
+     * @return Mean number of cells
+     */
+    double getPathLengthMean();
+
+    /**
+     * Gets the median path length of the population.
+     * @return Number of cells
+     */
+    int getPathLengthP50();
+
+    /**
+     * Gets the 90th percentile of the path lengths of the population.
+     * @return Number of cells
+     */
+    int getPathLengthP90();
+
+    /**
+     * Gets the longest path of the population.
+     * @return Number of cells
+     */
+    int getPathLengthMax();
+
+    /**
+     * Gets the bytes allocated by the simulation thread since the simulation started.
+     * @return Bytes, -1 if the JVM does not measure them
+     */
+    long getAllocatedBytes();
+
+    /**
+     * Gets the allocation rate of the simulation thread between the last two observations.
+     * @return Bytes per second of wall time, -1 if the JVM does not measure them
+     */
+    double getAllocationRate();
+
+    /**
+     * Gets the time spent running move events one at a time.
+     * @return Milliseconds
+     */
+    double getMoveMillis();
+
+    /**
+     * Gets the time spent running reproduction events one at a time, epidemics included.
+     * @return Milliseconds
+     */
+    double getReproductionMillis();
+
+    /**
+     * Gets the time spent running death events one at a time.
+     * @return Milliseconds
+     */
+    double getDeathMillis();
+
+    /**
+     * Gets the time spent in epidemics and in the sweeps they spread over later births.
+     * @return Milliseconds
+     */
+    double getEpidemicMillis();
+
+    /**
+     * Gets the time spent compacting the PEC.
+     * @return Milliseconds
+     */
+    double getCompactionMillis();
+
+    /**
+     * Gets the time spent running windows of events in parallel.
+     * @return Milliseconds
+     */
+    double getWindowMillis();
+}
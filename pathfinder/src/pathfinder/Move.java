@@ -26,16 +26,36 @@ public class Move extends Event {
         super(time, individual, pec);
     }
 
+    /**
+     * Returns the type code of move events.
+     *
+     * @return Event.MOVE
+     */
+    @Override
+    byte getType() {
+        return MOVE;
+    }
+
     /**
      * Executes the move event.
      * Moves the individual if alive and schedules the next move event.
      */
     @Override
     public void execute() {
-        // Implementation of the move event logic
+        run(time, individual, pec);
+    }
+
+    /**
+     * Move event logic, shared by event objects and the PEC event store.
+     *
+     * @param time       The time at which the event occurs.
+     * @param individual The individual involved in the event.
+     * @param pec        The event controller (PEC) managing events.
+     */
+    static void run(double time, Individual individual, Pec pec) {
         if (individual.isAlive()) {
             individual.move();
-            pec.addEvent(new Move(individual.getMoveTime() + time, individual, pec));
+            pec.schedule(MOVE, individual.getMoveTime() + time, individual);
         }
     }
 
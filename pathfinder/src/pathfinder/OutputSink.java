@@ -0,0 +1,160 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Destination of the output of a simulation: its configuration, its observations and its result.
+ *
+ * Every record is built in one StringBuilder, reused from record to record, and written
+ * with a single call to a buffered Writer, which is only flushed when the simulation
+ * ends or when asked to. Paths are appended cell by cell, without building a String per cell.
+ */
+public abstract class OutputSink implements AutoCloseable {
+
+    /**
+     * Output formats, selectable at startup.
+     */
+    public enum Format {
+        /** The human-readable report. */
+        TEXT,
+        /** One JSON object per line, per record. */
+        JSONL,
+        /** One CSV row per observation and one for the result, after a header line. */
+        CSV;
+
+        /**
+         * Creates a sink of this format.
+         * @param out The writer the records are written to, buffered by the sink
+         * @return The output sink
+         */
+        public OutputSink create(Writer out) {
+            switch (this) {
+                case JSONL:
+                    return new JsonLinesOutputSink(out);
+                case CSV:
+                    return new CsvOutputSink(out);
+                default:
+                    return new TextOutputSink(out);
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer out;
+    // Record being built, reused from record to record
+    protected final StringBuilder record = new StringBuilder(1024);
+    // Characters of the record, copied out of the builder without building a String
+    private char[] chars = new char[1024];
+
+    /**
+     * Constructs a sink writing to a writer, through a buffer.
+     * @param out The writer
+     */
+    protected OutputSink(Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a human-readable sink on the standard output, for simulations given no sink.
+     * @return The output sink
+     */
+    static OutputSink standardOutput() {
+        return Format.TEXT.create(new OutputStreamWriter(System.out));
+    }
+
+    /**
+     * Writes the configuration of a simulation.
+     * @param grid The grid
+     * @param tau Simulation time
+     * @param v Initial population size
+     * @param vmax Maximum population size
+     * @param k Reproduction parameter
+     * @param mu Mutation rate
+     * @param delta Death rate
+     * @param ro Comfort parameter
+     */
+    public abstract void writeConfig(Grid grid, int tau, int v, int vmax, int k, int mu, int delta, int ro);
+
+    /**
+     * Writes an observation of a simulation.
+     * @param grid The grid
+     * @param observation Observation number
+     * @param time Present time
+     * @param events Number of realized events
+     * @param populationSize Population size
+     * @param pathComplete Whether the final point has been hit
+     * @param bestPath Path of the best fit individual, null if there is none
+     * @param bestPathCost Cost of the best path, when complete
+     * @param bestComfort Comfort of the best path, when not complete
+     */
+    public abstract void writeObservation(Grid grid, int observation, double time, int events, int populationSize,
+                                          boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort);
+
+    /**
+     * Writes the result of a simulation.
+     * @param grid The grid
+     * @param pathComplete Whether the final point has been hit
+     * @param bestPath Path of the best fit individual, null if there is none
+     * @param bestPathCost Cost of the best path, when complete
+     * @param bestComfort Comfort of the best path, when not complete
+     */
+    public abstract void writeResult(Grid grid, boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort);
+
+    /**
+     * Writes the record built so far and clears it for the next one.
+     * @throws UncheckedIOException if the record cannot be written
+     */
+    protected void emit() {
+        int length = record.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        record.getChars(0, length, chars, 0);
+        try {
+            out.write(chars, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write output", e);
+        } finally {
+            record.setLength(0);
+        }
+    }
+
+    /**
+     * Writes the buffered records out.
+     * @throws UncheckedIOException if the records cannot be written
+     */
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write output", e);
+        }
+    }
+
+    /**
+     * Writes the buffered records out and closes the writer.
+     * @throws UncheckedIOException if the records cannot be written
+     */
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write output", e);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+/**
+ * A path on the grid, stored as a persistent list of nodes linked from the last
+ * cell back to the start. Nodes are immutable and shared: a copy of a path, or of
+ * one of its prefixes, is just a reference to a node, so a child shares its
+ * parent's path and memory grows with the number of distinct path tails.
+ * Each node holds its cell as a single int (see Grid.cellIndex) and the running
+ * cost of the path up to it, so truncating a path never recomputes edge costs.
+ *
+ * Revisits are detected without a per-path index, which would cost every copy
+ * time and memory in proportion to its length: every SET_INTERVAL-th node holds
+ * the set of cells up to it, a CellSet sharing its structure with the previous
+ * one, so checking a cell walks back at most SET_INTERVAL - 1 nodes and looks it
+ * up in that set. Copying or truncating a path leaves nothing to rebuild, and the
+ * sets cost a few bytes per node, amortized, so memory still grows with the number
+ * of distinct path tails.
+ */
+public class Path {
+
+    /**
+     * A cell of a path. Besides its parent, each node keeps a jump pointer to a
+     * farther ancestor (skew-binary jumps), so any ancestor is found in O(log n).
+     */
+    static final class Node {
+        final int cell; // Cell index
+        final int cost; // Cost of the path up to this cell
+        final int depth; // Position of the cell in the path
+        final Node parent; // Previous cell, null at the start
+        final Node jump; // Ancestor used to skip ahead when searching by depth
+        final CellSet visited; // Cells up to this one, at depths multiple of SET_INTERVAL, else null
+
+        /**
+         * Constructs a node after a given parent.
+         *
+         * @param cell   Cell index
+         * @param cost   Cost of the path up to this cell
+         * @param parent Previous node, or null for the start of a path
+         */
+        Node(int cell, int cost, Node parent) {
+            this.cell = cell;
+            this.cost = cost;
+            this.parent = parent;
+            if (parent == null) {
+                this.depth = 0;
+                this.jump = this;
+            } else {
+                this.depth = parent.depth + 1;
+                Node j = parent.jump;
+                this.jump = parent.depth - j.depth == j.depth - j.jump.depth ? j.jump : parent;
+            }
+            this.visited = depth % SET_INTERVAL == 0 ? visitedUpTo(cell, parent) : null;
+        }
+
+        /**
+         * Builds the set of cells of a path up to a new node, adding the cells after the
+         * last node holding a set to that set.
+         *
+         * @param cell   Cell of the new node
+         * @param parent Parent of the new node, or null for the start of a path
+         * @return The set of cells
+         */
+        private static CellSet visitedUpTo(int cell, Node parent) {
+            int[] cells = new int[SET_INTERVAL];
+            int count = 0;
+            cells[count++] = cell;
+            Node node = parent;
+            for (; node != null && node.visited == null; node = node.parent) {
+                cells[count++] = node.cell;
+            }
+            return (node != null ? node.visited : CellSet.EMPTY).with(cells, count);
+        }
+
+        /**
+         * Checks whether the path ending at this node visits a cell: walks back to the
+         * nearest node holding a set, at most SET_INTERVAL - 1 nodes, and looks it up there.
+         *
+         * @param cell Cell index
+         * @return true if the cell is in the path
+         */
+        boolean contains(int cell) {
+            Node node = this;
+            for (; node.visited == null; node = node.parent) {
+                if (node.cell == cell) return true;
+            }
+            return node.visited.contains(cell);
+        }
+
+        /**
+         * Returns the ancestor of this node at a given depth.
+         *
+         * @param depth Depth of the ancestor, at most the depth of this node
+         * @return The ancestor node
+         */
+        Node ancestor(int depth) {
+            Node node = this;
+            while (node.depth > depth) {
+                node = node.jump.depth >= depth ? node.jump : node.parent;
+            }
+            return node;
+        }
+    }
+
+    static final int SET_INTERVAL = 16; // Depths between the nodes holding the set of visited cells
+
+    private Node tail; // Last cell of the path
+
+    private int gridCells; // Number of cells in the grid
+
+    /**
+     * Constructs a path holding a single cell.
+     *
+     * @param start     Starting cell index
+     * @param gridCells Number of cells in the grid
+     */
+    Path(int start, int gridCells) {
+        this.tail = new Node(start, 0, null);
+        this.gridCells = gridCells;
+    }
+
+    /**
+     * Constructs a path sharing the first cells of another path, in O(log n).
+     *
+     * @param other  The path to copy
+     * @param length Number of cells to keep
+     */
+    Path(Path other, int length) {
+        this.tail = other.tail.ancestor(length - 1);
+        this.gridCells = other.gridCells;
+    }
+
+    /**
+     * Constructs a path ending at a given node, in O(1).
+     *
+     * @param tail      Last node of the path
+     * @param gridCells Number of cells in the grid
+     */
+    Path(Node tail, int gridCells) {
+        this.tail = tail;
+        this.gridCells = gridCells;
+    }
+
+    /**
+     * Constructs a path sharing all the cells of another path, in O(1).
+     *
+     * @param other The path to copy
+     */
+    Path(Path other) {
+        this.tail = other.tail;
+        this.gridCells = other.gridCells;
+    }
+
+    /**
+     * Appends a cell to the path.
+     *
+     * @param cell     Cell index
+     * @param edgeCost Cost of the move from the current last cell
+     */
+    void add(int cell, int edgeCost) {
+        tail = new Node(cell, tail.cost + edgeCost, tail);
+    }
+
+    /**
+     * Keeps only the first cells of the path, in O(log n).
+     *
+     * @param length Number of cells to keep
+     */
+    void truncate(int length) {
+        if (tail.depth >= length) {
+            tail = tail.ancestor(length - 1);
+        }
+    }
+
+    /**
+     * Checks whether the path visits a cell, in O(1): at most SET_INTERVAL - 1 nodes
+     * and a lookup in a trie at most three levels deep on grids up to 2^21 cells.
+     *
+     * @param cell Cell index
+     * @return true if the cell is in the path
+     */
+    boolean contains(int cell) {
+        return tail.contains(cell);
+    }
+
+    /**
+     * Returns the position of a cell in the path.
+     * The search runs back from the end of the path, so finding a cycle costs as
+     * much as truncating it, which keeps cycle removal O(1) amortized per move.
+     *
+     * @param cell Cell index
+     * @return Position of the cell, or -1 if the path does not visit it
+     */
+    int indexOf(int cell) {
+        if (!contains(cell)) return -1;
+
+        Node node = tail;
+        while (node.cell != cell) {
+            node = node.parent;
+        }
+        return node.depth;
+    }
+
+    /**
+     * Returns the cell at a given position, in O(log n).
+     *
+     * @param i Position in the path
+     * @return Cell index
+     */
+    public int getCell(int i) {
+        return tail.ancestor(i).cell;
+    }
+
+    /**
+     * Returns the last node of the path. Nodes are immutable, so this is a
+     * snapshot of the current path that later moves do not change.
+     *
+     * @return Last node
+     */
+    Node getTail() {
+        return tail;
+    }
+
+    /**
+     * Returns the number of cells in the grid the path lies on.
+     *
+     * @return Grid cell count
+     */
+    int getGridCells() {
+        return gridCells;
+    }
+
+    /**
+     * Returns the last cell of the path.
+     *
+     * @return Cell index
+     */
+    public int getLast() {
+        return tail.cell;
+    }
+
+    /**
+     * Returns the total cost of the path.
+     *
+     * @return Path cost
+     */
+    public int getCost() {
+        return tail.cost;
+    }
+
+    /**
+     * Returns the number of cells in the path.
+     *
+     * @return Path size
+     */
+    public int size() {
+        return tail.depth + 1;
+    }
+
+    /**
+     * Returns the cells of the path, from start to end.
+     *
+     * @return Cell indices
+     */
+    public int[] toArray() {
+        int[] cells = new int[size()];
+        for (Node node = tail; node != null; node = node.parent) {
+            cells[node.depth] = node.cell;
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the path as a list of coordinates, e.g. [(1, 1), (1, 2)].
+     *
+     * @param grid The grid the cell indices refer to
+     * @return String representation of the path
+     */
+    public String toString(Grid grid) {
+        int[] cells = toArray();
+        StringBuilder sb = new StringBuilder(cells.length * 8 + 2);
+        appendTo(sb, grid, cells);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the path in (x, y) coordinates to a builder, as toString(Grid) returns it.
+     *
+     * @param sb   The builder
+     * @param grid The grid the path is on
+     */
+    public void appendTo(StringBuilder sb, Grid grid) {
+        appendTo(sb, grid, toArray());
+    }
+
+    /**
+     * Appends cells in (x, y) coordinates to a builder.
+     *
+     * @param sb    The builder
+     * @param grid  The grid the cells are on
+     * @param cells Cell indices
+     */
+    private static void appendTo(StringBuilder sb, Grid grid, int[] cells) {
+        sb.append('[');
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('(').append(grid.getX(cells[i])).append(", ").append(grid.getY(cells[i])).append(')');
+        }
+        sb.append(']');
+    }
+}
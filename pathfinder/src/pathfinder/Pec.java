@@ -9,16 +9,76 @@
 
 package pathfinder;
 
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
 /**
  * The Pec class manages a priority event queue for a simulation,
  * handling event scheduling and time progression.
+ *
+ * Events are kept either as Event objects in an EventQueue, or, in store mode,
+ * as primitive records in an EventStore, which dispatches them by type code
+ * and allocates nothing per event.
+ *
+ * Events at equal times run in the order they were scheduled, whatever the queue: each
+ * event gets a sequence number when it is queued, which breaks ties.
+ *
+ * Events of individuals that died are cancelled lazily: cancel() only counts
+ * them as stale, they are dropped when they reach the head of the queue, and
+ * the queue is compacted once stale events make up most of it.
  */
 public class Pec {
 
-    // Priority queue to store events ordered by their scheduled time
-    private PriorityQueue<Event> que;
+    /**
+     * Implementations of the event queue, selectable at startup.
+     */
+    public enum QueueType {
+        /** Binary heap, O(log n) per operation. */
+        HEAP,
+        /** Calendar queue, O(1) amortized per operation. */
+        CALENDAR,
+        /** Primitive event store with a 4-ary heap, O(log n) per operation, no event objects. */
+        STORE
+    }
+
+    /**
+     * The state of a PEC at one point in time, for a checkpoint. Only the events of live
+     * individuals are kept, with the population id of their individual.
+     */
+    static final class Snapshot {
+        final double time;
+        final double nextUpdateTime;
+        final int events;
+        final long skippedEvents;
+        final int compactions;
+        final long sequence;
+        // Queued events, in no particular order
+        final byte[] types;
+        final double[] times;
+        final long[] sequences;
+        final int[] owners;
+
+        Snapshot(double time, double nextUpdateTime, int events, long skippedEvents, int compactions, long sequence,
+                 byte[] types, double[] times, long[] sequences, int[] owners) {
+            this.time = time;
+            this.nextUpdateTime = nextUpdateTime;
+            this.events = events;
+            this.skippedEvents = skippedEvents;
+            this.compactions = compactions;
+            this.sequence = sequence;
+            this.types = types;
+            this.times = times;
+            this.sequences = sequences;
+            this.owners = owners;
+        }
+    }
+
+    // Smallest queue worth compacting
+    private static final int COMPACTION_MIN_SIZE = 1024;
+
+    // Priority queue to store events ordered by their scheduled time, null in store mode
+    private EventQueue que;
+    // Primitive event storage, used instead of que in store mode
+    private EventStore store;
 
     // Maximum simulation time
     private int tau;
@@ -31,28 +91,157 @@ public class Pec {
 
     // Number of executed events
     private int events;
+    // Number of events queued so far, the sequence number of the next one
+    private long sequence;
+
+    // Number of queued events whose individual is dead
+    private int staleEvents;
+    // Number of stale events dropped from the head of the queue
+    private long skippedEvents;
+    // Number of times the queue was compacted
+    private int compactions;
+
+    // Runs windows of events in parallel, null to run events one at a time
+    private EventWindow window;
+    // Engine metrics, null when disabled
+    private Metrics metrics;
 
     /**
-     * Constructs a Pec object with a given maximum simulation time.
+     * Constructs a Pec object with a given maximum simulation time, backed by a binary heap.
      * @param tau The maximum simulation time.
      */
     public Pec(int tau) {
+        this(tau, QueueType.HEAP);
+    }
+
+    /**
+     * Constructs a Pec object with a given maximum simulation time and event queue.
+     * @param tau The maximum simulation time.
+     * @param queueType The event queue implementation.
+     */
+    public Pec(int tau, QueueType queueType) {
         this.tau = tau;
         this.timeDiv = tau / 20.0;
         this.nextUpdateTime = this.timeDiv;
         this.time = 0.0;
         this.events = 0;
+        this.staleEvents = 0;
+        this.skippedEvents = 0;
+        this.compactions = 0;
 
-        que = new PriorityQueue<>((e1, e2) -> Double.compare(e1.getTime(), e2.getTime()));
+        switch (queueType) {
+            case HEAP:
+                que = new HeapEventQueue();
+                break;
+            case CALENDAR:
+                que = new CalendarEventQueue();
+                break;
+            case STORE:
+                store = new EventStore();
+                break;
+        }
     }
 
     /**
-     * Adds an event to the queue if its scheduled time is within bounds.
+     * Adds an event to the queue if its scheduled time is within bounds
+     * and its individual is still alive.
      * @param e The event to add.
      */
     public void addEvent(Event e) {
-        if (e.getTime() >= 0 && e.getTime() <= tau)
+        if (store != null) {
+            schedule(e.getType(), e.getTime(), e.getIndividual());
+        } else if (e.getTime() >= 0 && e.getTime() <= tau && e.getIndividual().isAlive()) {
+            e.setSequence(sequence++);
             que.offer(e);
+            e.getIndividual().addPendingEvent();
+        }
+    }
+
+    /**
+     * Schedules an event if its time is within bounds and its individual is still alive.
+     * In store mode no event object is created.
+     * @param type The event type code (Event.MOVE, Event.REPRODUCTION or Event.DEATH).
+     * @param time The event time.
+     * @param individual The individual involved in the event.
+     */
+    void schedule(byte type, double time, Individual individual) {
+        if (store == null) {
+            addEvent(Event.create(type, time, individual, this));
+        } else if (time >= 0 && time <= tau && individual.isAlive()) {
+            store.push(type, time, sequence++, individual);
+            individual.addPendingEvent();
+        }
+    }
+
+    /**
+     * Cancels the pending events of an individual that left the population.
+     * The events stay queued and are dropped lazily; once they outnumber
+     * the live ones, the queue is compacted.
+     * @param individual The dead individual.
+     */
+    public void cancel(Individual individual) {
+        staleEvents += individual.getPendingEvents();
+
+        if (getQueueSize() >= COMPACTION_MIN_SIZE && staleEvents * 2 > getQueueSize()) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes every event of a dead individual from the queue, in O(n).
+     */
+    private void compact() {
+        long start = metrics != null ? System.nanoTime() : 0L;
+        if (store != null) {
+            store.removeDead();
+        } else {
+            que.removeIf(e -> !e.getIndividual().isAlive());
+        }
+        staleEvents = 0;
+        compactions++;
+        if (metrics != null) metrics.recordCompaction(System.nanoTime() - start);
+    }
+
+    /**
+     * Sets the executor of parallel event windows.
+     * @param window The executor, or null to run events one at a time.
+     */
+    void setWindow(EventWindow window) {
+        this.window = window;
+    }
+
+    /**
+     * Sets the metrics events are recorded in.
+     * @param metrics The metrics, or null to record none.
+     */
+    void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Drops the stale events at the head of the queue.
+     */
+    void skipStaleEvents() {
+        if (store != null) {
+            while (staleEvents > 0 && store.size() > 0 && !store.peekIndividual().isAlive()) {
+                int slot = store.pop();
+                Individual individual = store.getIndividual(slot);
+                store.free(slot);
+                individual.removePendingEvent();
+                if (individual.getPendingEvents() == 0) {
+                    store.release(individual);
+                }
+                staleEvents--;
+                skippedEvents++;
+            }
+            return;
+        }
+
+        while (staleEvents > 0 && !que.isEmpty() && !peekNextEvent().getIndividual().isAlive()) {
+            getNextEvent().getIndividual().removePendingEvent();
+            staleEvents--;
+            skippedEvents++;
+        }
     }
 
     /**
@@ -60,26 +249,185 @@ public class Pec {
      * @return 0 if an event was executed, 1 if an update occurred, -1 if no events remain.
      */
     public int next() {
-        if (que.isEmpty()) {
+        skipStaleEvents();
+
+        if (getQueueSize() == 0) {
             // sim.print()
             // sim.end()
             return -1;
         }
 
-        if (peekNextEvent().getTime() >= nextUpdateTime) {
+        if (peekNextTime() >= nextUpdateTime) {
             // sim.print()
             time = nextUpdateTime;
             nextUpdateTime += timeDiv;
             return 1;
+        }
+
+        long start = metrics != null ? System.nanoTime() : 0L;
+        byte type;
+        if (window != null && window.run(this)) {
+            if (metrics != null) metrics.recordWindow(System.nanoTime() - start);
+            return 0;
+        } else if (store != null) {
+            int slot = store.pop();
+            type = store.getType(slot);
+            double eventTime = store.getTime(slot);
+            Individual individual = store.getIndividual(slot);
+            store.free(slot);
+            individual.removePendingEvent();
+
+            switch (type) {
+                case Event.MOVE:
+                    Move.run(eventTime, individual, this);
+                    break;
+                case Event.REPRODUCTION:
+                    Reproduction.run(eventTime, individual, this);
+                    break;
+                case Event.DEATH:
+                    Death.run(eventTime, individual, this);
+                    break;
+            }
+            events++;
+
+            if (individual.getPendingEvents() == 0) {
+                store.release(individual);
+            }
+
+            time = eventTime;
         } else {
             Event e = getNextEvent();
+            e.getIndividual().removePendingEvent();
 
             e.execute();
             events++;
 
+            type = e.getType();
             time = e.getTime();
-            return 0;
         }
+
+        if (metrics != null) metrics.recordEvent(type, System.nanoTime() - start);
+        return 0;
+    }
+
+    /**
+     * Gets the type code of the next event in the queue.
+     * @return The event type code.
+     */
+    byte peekNextType() {
+        return store != null ? store.getType(store.peekSlot()) : que.peek().getType();
+    }
+
+    /**
+     * Removes the next event from the queue without executing it, for a window to run it.
+     * @return The individual involved in the event.
+     */
+    Individual removeNext() {
+        Individual individual;
+        if (store != null) {
+            int slot = store.pop();
+            individual = store.getIndividual(slot);
+            store.free(slot);
+            individual.removePendingEvent();
+            if (individual.getPendingEvents() == 0) {
+                store.release(individual);
+            }
+        } else {
+            individual = getNextEvent().getIndividual();
+            individual.removePendingEvent();
+        }
+        return individual;
+    }
+
+    /**
+     * Records events executed by a window.
+     * @param count Number of events executed.
+     * @param lastTime Time of the last of them.
+     */
+    void addExecutedEvents(int count, double lastTime) {
+        events += count;
+        time = lastTime;
+    }
+
+    /**
+     * Takes a snapshot of the PEC, in O(n), leaving out stale events.
+     * @return The snapshot.
+     */
+    Snapshot snapshot() {
+        int size = getQueueSize();
+        byte[] types = new byte[size];
+        double[] times = new double[size];
+        long[] sequences = new long[size];
+        int[] owners = new int[size];
+        int count = 0;
+        if (store != null) {
+            for (int i = 0; i < store.size(); i++) {
+                int slot = store.getSlot(i);
+                Individual individual = store.getIndividual(slot);
+                if (!individual.isAlive()) continue;
+                types[count] = store.getType(slot);
+                times[count] = store.getTime(slot);
+                sequences[count] = store.getSequence(i);
+                owners[count++] = individual.getId();
+            }
+        } else {
+            int[] counter = {0};
+            que.forEach(e -> {
+                if (!e.getIndividual().isAlive()) return;
+                int i = counter[0]++;
+                types[i] = e.getType();
+                times[i] = e.getTime();
+                sequences[i] = e.getSequence();
+                owners[i] = e.getIndividual().getId();
+            });
+            count = counter[0];
+        }
+        return new Snapshot(time, nextUpdateTime, events, skippedEvents, compactions, sequence, Arrays.copyOf(types, count),
+                Arrays.copyOf(times, count), Arrays.copyOf(sequences, count), Arrays.copyOf(owners, count));
+    }
+
+    /**
+     * Restores a snapshot into an empty PEC with the same tau, queueing its events again.
+     * Events are ordered by time and sequence number, so the order they are queued in does not matter.
+     * @param snapshot The snapshot.
+     * @param population The population restored with the PEC, holding the individuals of the events.
+     * @throws IllegalArgumentException if the PEC is not empty or an event has no live individual.
+     */
+    void restore(Snapshot snapshot, Population population) {
+        if (getQueueSize() != 0) {
+            throw new IllegalArgumentException("Snapshots can only be restored into an empty PEC");
+        }
+        time = snapshot.time;
+        nextUpdateTime = snapshot.nextUpdateTime;
+        events = snapshot.events;
+        skippedEvents = snapshot.skippedEvents;
+        compactions = snapshot.compactions;
+        staleEvents = 0;
+
+        for (int i = 0; i < snapshot.types.length; i++) {
+            int id = snapshot.owners[i];
+            Individual individual = id >= 0 && id < population.getCapacity() ? population.getIndividual(id) : null;
+            if (individual == null || snapshot.types[i] < Event.MOVE || snapshot.types[i] > Event.DEATH) {
+                throw new IllegalArgumentException("Invalid event in PEC snapshot: type " + snapshot.types[i] + ", individual " + id);
+            }
+            if (store != null) {
+                store.push(snapshot.types[i], snapshot.times[i], snapshot.sequences[i], individual);
+            } else {
+                Event e = Event.create(snapshot.types[i], snapshot.times[i], individual, this);
+                e.setSequence(snapshot.sequences[i]);
+                que.offer(e);
+            }
+            individual.addPendingEvent();
+        }
+        sequence = snapshot.sequence;
+    }
+
+    /**
+     * Gets the time of the next update.
+     * @return The next update time.
+     */
+    double getNextUpdateTime() {
+        return nextUpdateTime;
     }
 
     /**
@@ -98,6 +446,55 @@ public class Pec {
         return events;
     }
 
+    /**
+     * Gets the number of events in the queue, stale ones included.
+     * @return The queue size.
+     */
+    public int getQueueSize() {
+        return store != null ? store.size() : que.size();
+    }
+
+    /**
+     * Gets the number of queued events whose individual is dead.
+     * @return The stale event count.
+     */
+    public int getStaleEvents() {
+        return staleEvents;
+    }
+
+    /**
+     * Gets the fraction of queued events whose individual is alive.
+     * @return The live ratio, 1 when the queue is empty.
+     */
+    public double getLiveRatio() {
+        int size = getQueueSize();
+        return size == 0 ? 1.0 : (double) (size - staleEvents) / size;
+    }
+
+    /**
+     * Gets the number of stale events dropped from the head of the queue.
+     * @return The skipped event count.
+     */
+    public long getSkippedEvents() {
+        return skippedEvents;
+    }
+
+    /**
+     * Gets the number of times the queue was compacted.
+     * @return The compaction count.
+     */
+    public int getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Peeks at the time of the next event in the queue.
+     * @return The next event time.
+     */
+    double peekNextTime() {
+        return store != null ? store.peekTime() : que.peek().getTime();
+    }
+
     /**
      * Peeks at the next event in the queue without removing it.
      * @return The next event.
@@ -134,7 +531,10 @@ public class Pec {
                 ", nextUpdateTime=" + nextUpdateTime +
                 ", timeDiv=" + timeDiv +
                 ", events=" + events +
-                ", que=" + que +
+                ", staleEvents=" + staleEvents +
+                ", liveRatio=" + getLiveRatio() +
+                ", compactions=" + compactions +
+                ", que=" + (store != null ? store : que) +
                 '}';
     }
 }
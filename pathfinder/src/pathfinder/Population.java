@@ -9,20 +9,37 @@
 
 package pathfinder;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.PriorityQueue;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+import java.util.function.Consumer;
 
 /**
  * Represents a population of Individuals for a genetic algorithm.
  * Manages population size, selection, and epidemic removal.
+ *
+ * Individuals are registered under dense integer ids, reused after they die.
+ * A bitset marks the ids in use and a generation counter per id tells a live
+ * individual from a dead one that held the same id, so membership checks,
+ * removals and iteration are array operations. Iteration follows id order,
+ * which makes it deterministic.
  */
 public class Population {
 
-    // Set of individuals in the population
-    private HashSet<Individual> individuals;
+    private static final int INITIAL_CAPACITY = 64;
+    // Number of fittest individuals spared by an epidemic
+    private static final int EPIDEMIC_SURVIVORS = 5;
+
+    // Individuals by id, null for free ids
+    private Individual[] individuals;
+    // Generation of each id, bumped every time the id is freed
+    private int[] generations;
+    // Bitset of the ids in use
+    private long[] alive;
+    // Stack of free ids below capacity
+    private int[] freeIds;
+    private int freeIdCount;
+    // Number of individuals in the population
+    private int size;
 
     // Maximum allowed population size
     private int maxSize;
@@ -30,12 +47,90 @@ public class Population {
     // Best path and comfort metrics found so far
     private boolean isPathComplete;
     private int bestPathCost;
-    private ArrayList<int[]> bestPath;
+    // The best path is recorded as its last node, which is immutable, and the
+    // individual that found it; a Path is only built when it is read
+    private Individual bestIndividual;
+    private Path.Node bestPathTail;
+    private int bestPathGridCells;
+    private long bestPathVersion;
+    private Path bestPath;
+    private long bestPathReadVersion;
     private double bestComfort;
 
     // Genetic algorithm parameters
     private int k, mu, delta, ro;
 
+    // Called with every individual that leaves the population
+    private Consumer<Individual> removalListener;
+
+    // Epidemic policy and the thresholds it sets for maxSize
+    private EpidemicPolicy epidemicPolicy;
+    private int highWatermark;
+    private int lowWatermark;
+
+    // Epidemic state, reused across epidemics
+    private RandomGenerator random;
+    private int[] fittest;
+    private int[] fittestGenerations;
+    private int survivorCount;
+    // Next id of the sweep in progress, -1 when no sweep is in progress
+    private int sweepCursor;
+
+    // Engine metrics, null when disabled
+    private Metrics metrics;
+
+    // Comfort and event delays of the individuals, for the grid they were last built for
+    private ComfortModel comfortModel;
+
+    /**
+     * The state of a population at one point in time, for a checkpoint: arrays copied out
+     * of the population, and path nodes, which are immutable and can be shared.
+     */
+    static final class Snapshot {
+        // Id allocation: the generation of every id, and the stack of free ids
+        final int[] generations;
+        final int[] freeIds;
+        // Live individuals, by ascending id
+        final int[] ids;
+        final double[] comforts;
+        final Path.Node[] tails;
+        // Best path
+        final boolean pathComplete;
+        final int bestPathCost;
+        final long bestPathVersion;
+        final double bestComfort;
+        final Path.Node bestPathTail; // null if none was recorded
+        final int bestId; // Id of the individual that found it, -1 if it died
+        // Epidemic sweep in progress
+        final int[] fittest;
+        final int[] fittestGenerations;
+        final int sweepCursor;
+        // Random source
+        final long randomSeed;
+        final long randomGamma;
+
+        Snapshot(int[] generations, int[] freeIds, int[] ids, double[] comforts, Path.Node[] tails,
+                 boolean pathComplete, int bestPathCost, long bestPathVersion, double bestComfort, Path.Node bestPathTail,
+                 int bestId, int[] fittest, int[] fittestGenerations, int sweepCursor, long randomSeed, long randomGamma) {
+            this.generations = generations;
+            this.freeIds = freeIds;
+            this.ids = ids;
+            this.comforts = comforts;
+            this.tails = tails;
+            this.pathComplete = pathComplete;
+            this.bestPathCost = bestPathCost;
+            this.bestPathVersion = bestPathVersion;
+            this.bestComfort = bestComfort;
+            this.bestPathTail = bestPathTail;
+            this.bestId = bestId;
+            this.fittest = fittest;
+            this.fittestGenerations = fittestGenerations;
+            this.sweepCursor = sweepCursor;
+            this.randomSeed = randomSeed;
+            this.randomGamma = randomGamma;
+        }
+    }
+
     /**
      * Constructs a Population with given parameters.
      * @param maxSize Maximum population size
@@ -51,11 +146,29 @@ public class Population {
         this.delta = delta;
         this.ro = ro;
 
-        individuals = new HashSet<>();
+        individuals = new Individual[INITIAL_CAPACITY];
+        generations = new int[INITIAL_CAPACITY];
+        alive = new long[INITIAL_CAPACITY >>> 6];
+        freeIds = new int[INITIAL_CAPACITY];
+        for (int i = 0; i < INITIAL_CAPACITY; i++) {
+            freeIds[i] = INITIAL_CAPACITY - 1 - i;
+        }
+        freeIdCount = INITIAL_CAPACITY;
+        size = 0;
         isPathComplete = false;
         bestPathCost = Integer.MAX_VALUE;
-        bestPath = new ArrayList<>();
+        bestIndividual = null;
+        bestPathTail = null;
+        bestPathVersion = 0;
+        bestPath = null;
+        bestPathReadVersion = 0;
         bestComfort = 0;
+        removalListener = individual -> {};
+        random = new SplitMixRandom();
+        fittest = new int[EPIDEMIC_SURVIVORS];
+        fittestGenerations = new int[EPIDEMIC_SURVIVORS];
+        sweepCursor = -1;
+        setEpidemicPolicy(EpidemicPolicy.EXACT);
     }
 
     /**
@@ -63,7 +176,7 @@ public class Population {
      * @return Number of individuals
      */
     public int getSize() {
-        return individuals.size();
+        return size;
     }
 
     /**
@@ -83,13 +196,52 @@ public class Population {
     }
 
     /**
-     * Gets the best path found.
-     * @return List of coordinates representing the best path
+     * Gets the best path found, building it from the recorded snapshot
+     * if it changed since the last read.
+     * @return The best path, or null if none has been recorded yet
      */
-    public ArrayList<int[]> getBestPath() {
+    public Path getBestPath() {
+        if (bestPathReadVersion != bestPathVersion) {
+            bestPath = new Path(bestPathTail, bestPathGridCells);
+            bestPathReadVersion = bestPathVersion;
+        }
         return bestPath;
     }
 
+    /**
+     * Gets the individual that found the best path.
+     * Its path may have changed since; getBestPath returns the path as it was recorded.
+     * @return The individual, or null if no best path has been recorded yet
+     */
+    public Individual getBestIndividual() {
+        return bestIndividual;
+    }
+
+    /**
+     * Gets the version of the best path, incremented every time a new one is recorded.
+     * @return Best path version
+     */
+    public long getBestPathVersion() {
+        return bestPathVersion;
+    }
+
+    /**
+     * Gets the random source of the population, used by its individuals and epidemics.
+     * Each population has its own, so independent simulations do not share one.
+     * @return The random source
+     */
+    RandomGenerator getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets the random source of the population.
+     * @param random The random source
+     */
+    public void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
     /**
      * Gets the comfort value of the best individual.
      * @return Best comfort value
@@ -155,11 +307,61 @@ public class Population {
     }
 
     /**
-     * Sets the best path found.
-     * @param bestPath List of coordinates representing the best path
+     * Records the current path of an individual as the best path found, in O(1).
+     * @param individual The individual whose path is the best so far
+     */
+    public void setBestPath(Individual individual) {
+        setBestPath(individual, individual.getPath().getTail());
+    }
+
+    /**
+     * Records a path of an individual as the best path found, in O(1).
+     * @param individual The individual that found the path
+     * @param tail Last node of the path
+     */
+    private void setBestPath(Individual individual, Path.Node tail) {
+        this.bestIndividual = individual;
+        this.bestPathTail = tail;
+        this.bestPathGridCells = individual.getPath().getGridCells();
+        this.bestPathVersion++;
+    }
+
+    /**
+     * Offers the outcome of a move as the best path: it becomes the best path if it
+     * has the best comfort so far, or if it reaches the final point first or more cheaply.
+     * @param individual The individual that moved
+     * @param comfort Its comfort after the move
+     * @param pathCost The cost of its path after the move
+     * @param tail Last node of its path after the move
+     * @param atEnd Whether the move reached the final point
      */
-    public void setBestPath(ArrayList<int[]> bestPath) {
-        this.bestPath = new ArrayList<>(bestPath);
+    void offerBestPath(Individual individual, double comfort, int pathCost, Path.Node tail, boolean atEnd) {
+        if (comfort > bestComfort) {
+            bestPathCost = pathCost;
+            setBestPath(individual, tail);
+            bestComfort = comfort;
+        }
+
+        if (atEnd) {
+            if (!isPathComplete) {
+                isPathComplete = true;
+                bestPathCost = pathCost;
+                setBestPath(individual, tail);
+            }
+            else if (pathCost < bestPathCost) {
+                bestPathCost = pathCost;
+                setBestPath(individual, tail);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of individuals that can be born before an epidemic could start,
+     * assuming none dies in between.
+     * @return Number of births, 0 while a sweep is in progress
+     */
+    int getBirthsBeforeEpidemic() {
+        return sweepCursor >= 0 ? 0 : Math.max(0, highWatermark - size);
     }
 
     /**
@@ -170,25 +372,120 @@ public class Population {
         this.bestComfort = bestComfort;
     }
 
+    /**
+     * Gets the epidemic policy.
+     * @return The epidemic policy
+     */
+    public EpidemicPolicy getEpidemicPolicy() {
+        return epidemicPolicy;
+    }
+
+    /**
+     * Sets the epidemic policy.
+     * @param epidemicPolicy The epidemic policy
+     */
+    public void setEpidemicPolicy(EpidemicPolicy epidemicPolicy) {
+        this.epidemicPolicy = epidemicPolicy;
+        this.highWatermark = epidemicPolicy.getHighWatermark(maxSize);
+        this.lowWatermark = epidemicPolicy.getLowWatermark(maxSize);
+    }
+
+    /**
+     * Sets the listener called with every individual that dies or is culled.
+     * @param removalListener The listener
+     */
+    public void setRemovalListener(Consumer<Individual> removalListener) {
+        this.removalListener = removalListener;
+    }
+
     /**
      * Checks if the population contains a given individual.
      * @param individual The individual to check
      * @return True if present
      */
     public boolean containsIndividual(Individual individual) {
-        return individuals.contains(individual);
+        int id = individual.getId();
+        return id >= 0 && (alive[id >>> 6] & (1L << id)) != 0 && generations[id] == individual.getGeneration();
     }
 
     /**
-     * Adds an individual to the population.
-     * Triggers epidemic if population exceeds maxSize.
+     * Adds an individual to the population, giving it a free id.
+     * Triggers epidemic if population exceeds the high watermark of the epidemic
+     * policy (maxSize by default), or advances the sweep in progress. A sweep in
+     * progress that falls behind the births, the size passing the high watermark
+     * again, is finished at once, so the size stays at most one above the high watermark
+     * unless a whole sweep spares everyone.
      * @param individual The individual to add
      */
     public void addIndividual(Individual individual) {
-        individuals.add(individual);
-        if (individuals.size() > maxSize) {
+        if (freeIdCount == 0) {
+            grow();
+        }
+        int id = freeIds[--freeIdCount];
+        individuals[id] = individual;
+        alive[id >>> 6] |= 1L << id;
+        individual.setId(id, generations[id]);
+        size++;
+
+        if (sweepCursor >= 0 && size <= highWatermark) {
+            long start = metrics != null ? System.nanoTime() : 0L;
+            sweep(epidemicPolicy.getChunk());
+            if (metrics != null) metrics.recordSweep(System.nanoTime() - start);
+        } else if (size > highWatermark) {
+            long start = metrics != null ? System.nanoTime() : 0L;
             epidemic(); // Remove individuals based on the epidemic logic
+            if (metrics != null) metrics.recordEpidemic(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Gets the comfort model of the individuals of this population on a grid.
+     * @param grid The grid the individuals move on
+     * @return The comfort model, shared by every individual on that grid
+     */
+    ComfortModel getComfortModel(Grid grid) {
+        if (comfortModel == null || comfortModel.getGrid() != grid) {
+            comfortModel = new ComfortModel(grid, k, mu, delta, ro);
+        }
+        return comfortModel;
+    }
+
+    /**
+     * Sets the metrics epidemics are recorded in.
+     * @param metrics The metrics, or null to record none
+     */
+    void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the path size of every individual, in id order.
+     * @return Number of cells in the path of each individual
+     */
+    int[] getPathSizes() {
+        int[] sizes = new int[size];
+        int count = 0;
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            sizes[count++] = individuals[id].getPath().size();
         }
+        return sizes;
+    }
+
+    /**
+     * Gets the individual holding an id.
+     * @param id The id of a live individual
+     * @return The individual, or null if the id is free
+     */
+    Individual getIndividual(int id) {
+        return individuals[id];
+    }
+
+    /**
+     * Gets the number of ids, in use or free.
+     * @return Id capacity
+     */
+    int getCapacity() {
+        return individuals.length;
     }
 
     /**
@@ -196,44 +493,245 @@ public class Population {
      * @param individual The individual to remove
      */
     public void removeIndividual(Individual individual) {
-        individuals.remove(individual);
+        if (containsIndividual(individual)) {
+            remove(individual.getId());
+        }
+    }
+
+    /**
+     * Removes the individual holding an id and frees the id.
+     * @param id The id of a live individual
+     */
+    private void remove(int id) {
+        Individual individual = individuals[id];
+        individuals[id] = null;
+        alive[id >>> 6] &= ~(1L << id);
+        generations[id]++;
+        freeIds[freeIdCount++] = id;
+        size--;
+
+        removalListener.accept(individual);
     }
 
     /**
-     * Returns the k fittest individuals in the population.
+     * Doubles the id capacity. Only called when every id is in use.
+     */
+    private void grow() {
+        int capacity = individuals.length;
+        individuals = Arrays.copyOf(individuals, capacity * 2);
+        generations = Arrays.copyOf(generations, capacity * 2);
+        alive = Arrays.copyOf(alive, (capacity * 2) >>> 6);
+        freeIds = Arrays.copyOf(freeIds, capacity * 2);
+        for (int i = 0; i < capacity; i++) {
+            freeIds[i] = capacity * 2 - 1 - i;
+        }
+        freeIdCount = capacity;
+    }
+
+    /**
+     * Returns the first id in use from a given id on.
+     * @param from The id to start from
+     * @return The next id in use, or -1 if there is none
+     */
+    private int nextId(int from) {
+        int word = from >>> 6;
+        if (word >= alive.length) return -1;
+
+        long bits = alive[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == alive.length) return -1;
+            bits = alive[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Selects the k fittest individuals in the population in a single pass.
+     * The selection is kept sorted by descending comfort in the given array,
+     * so each individual costs one comparison unless it enters the selection.
      * @param k Number of individuals to select
-     * @return Set of k fittest individuals
+     * @param ids Array receiving the ids of the selected individuals, at least k long
+     * @return Number of individuals selected, less than k if the population is smaller
      */
-    private HashSet<Individual> getKFittestIndividuals(int k) {
-        PriorityQueue<Individual> kFittestIndividuals = new PriorityQueue<>(
-                (i1, i2) -> Double.compare(i2.getComfort(), i1.getComfort())
-        );
+    int getKFittestIndividuals(int k, int[] ids) {
+        int count = 0;
+
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            double comfort = individuals[id].getComfort();
+            if (count == k && comfort <= individuals[ids[k - 1]].getComfort()) {
+                continue; // Not fitter than the least fit selected individual
+            }
 
-        for (Individual individual : individuals) {
-            kFittestIndividuals.offer(individual);
-            if (kFittestIndividuals.size() > k) {
-                kFittestIndividuals.poll(); // Remove the least fit individual
+            int i = count < k ? count++ : k - 1;
+            while (i > 0 && individuals[ids[i - 1]].getComfort() < comfort) {
+                ids[i] = ids[i - 1];
+                i--;
             }
+            ids[i] = id;
         }
 
-        return new HashSet<>(kFittestIndividuals);
+        return count;
     }
 
     /**
      * Performs an epidemic event, removing less fit individuals
      * not in the k fittest, based on their comfort value.
+     * Depending on the policy, the epidemic sweeps the population once, sweeps it
+     * until the low watermark is reached, or starts a sweep spread over later births.
+     * An incremental epidemic that finds a sweep still in progress finishes it and
+     * sweeps at once until the low watermark, as the watermark policy does: each birth
+     * visits only chunk ids, which cull fewer than one individual on average once
+     * comforts are above 1 - 1/chunk.
      */
     private void epidemic() {
-        HashSet<Individual> kFittest = getKFittestIndividuals(5);
-        Random random = new Random();
-
-        Iterator<Individual> iterator = individuals.iterator();
-        while (iterator.hasNext()) {
-            Individual individual = iterator.next();
-            if (!kFittest.contains(individual) && random.nextDouble() > individual.getComfort()) {
-                iterator.remove(); // Remove the individual if not in the k-fittest
+        boolean behind = sweepCursor >= 0;
+        if (behind) {
+            sweep(Integer.MAX_VALUE); // Finish the sweep that fell behind the births
+            if (size <= lowWatermark) return;
+        }
+
+        startSweep();
+        if (epidemicPolicy.getChunk() > 0 && !behind) {
+            sweep(epidemicPolicy.getChunk());
+            return;
+        }
+
+        int before;
+        do {
+            before = size;
+            sweep(Integer.MAX_VALUE);
+            if (!epidemicPolicy.isRepeating() || size <= lowWatermark || size == before) break;
+            startSweep();
+        } while (true);
+    }
+
+    /**
+     * Starts a sweep of the population, selecting the individuals it spares.
+     */
+    private void startSweep() {
+        survivorCount = getKFittestIndividuals(EPIDEMIC_SURVIVORS, fittest);
+        for (int i = 0; i < survivorCount; i++) {
+            fittestGenerations[i] = generations[fittest[i]];
+        }
+        sweepCursor = 0;
+    }
+
+    /**
+     * Advances the sweep in progress over a number of individuals.
+     * When an incremental sweep ends above the low watermark, another one starts.
+     * @param budget Maximum number of individuals to visit
+     */
+    private void sweep(int budget) {
+        int id = nextId(sweepCursor);
+        for (; id >= 0 && budget > 0; id = nextId(id + 1), budget--) {
+            if (!isSelected(id) && random.nextDouble() > individuals[id].getComfort()) {
+                remove(id); // Remove the individual if not in the k-fittest
+            }
+        }
+
+        if (id >= 0) {
+            sweepCursor = id;
+        } else if (epidemicPolicy.getChunk() > 0 && epidemicPolicy.isRepeating() && size > lowWatermark) {
+            startSweep();
+        } else {
+            sweepCursor = -1;
+        }
+    }
+
+    /**
+     * Checks whether an id is among the fittest spared by the current sweep.
+     * @param id The id to check
+     * @return True if spared
+     */
+    private boolean isSelected(int id) {
+        for (int i = 0; i < survivorCount; i++) {
+            if (fittest[i] == id && fittestGenerations[i] == generations[id]) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Takes a snapshot of the population, in O(n): only arrays are copied, the paths are shared.
+     * @return The snapshot
+     * @throws IllegalStateException if the random source is not a SplitMixRandom, whose state can be saved
+     */
+    Snapshot snapshot() {
+        if (!(random instanceof SplitMixRandom)) {
+            throw new IllegalStateException("The random source of the population cannot be checkpointed");
+        }
+        SplitMixRandom splitMix = (SplitMixRandom) random;
+
+        int[] ids = new int[size];
+        double[] comforts = new double[size];
+        Path.Node[] tails = new Path.Node[size];
+        int count = 0;
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            ids[count] = id;
+            comforts[count] = individuals[id].getComfort();
+            tails[count] = individuals[id].getPath().getTail();
+            count++;
+        }
+        int bestId = bestIndividual != null && containsIndividual(bestIndividual) ? bestIndividual.getId() : -1;
+
+        return new Snapshot(generations.clone(), Arrays.copyOf(freeIds, freeIdCount), ids, comforts, tails,
+                isPathComplete, bestPathCost, bestPathVersion, bestComfort, bestPathTail, bestId,
+                Arrays.copyOf(fittest, survivorCount), Arrays.copyOf(fittestGenerations, survivorCount), sweepCursor,
+                splitMix.getSeed(), splitMix.getGamma());
+    }
+
+    /**
+     * Restores a snapshot into an empty population with the same parameters and epidemic policy.
+     * The removal listener is not called, and no event is scheduled.
+     * @param snapshot The snapshot
+     * @param grid The grid the individuals move on
+     * @throws IllegalArgumentException if the population is not empty or the snapshot is inconsistent
+     */
+    void restore(Snapshot snapshot, Grid grid) {
+        if (size != 0) {
+            throw new IllegalArgumentException("Snapshots can only be restored into an empty population");
+        }
+        int capacity = snapshot.generations.length;
+        if (capacity < INITIAL_CAPACITY || Integer.bitCount(capacity) != 1 || snapshot.ids.length + snapshot.freeIds.length != capacity) {
+            throw new IllegalArgumentException("Invalid population snapshot: " + capacity + " ids");
+        }
+
+        individuals = new Individual[capacity];
+        generations = snapshot.generations.clone();
+        alive = new long[capacity >>> 6];
+        freeIds = Arrays.copyOf(snapshot.freeIds, capacity);
+        freeIdCount = snapshot.freeIds.length;
+        for (int i = 0; i < snapshot.ids.length; i++) {
+            int id = snapshot.ids[i];
+            if (id < 0 || id >= capacity || individuals[id] != null) {
+                throw new IllegalArgumentException("Invalid population snapshot: id " + id);
+            }
+            Individual individual = Individual.restore(this, grid, snapshot.tails[i], snapshot.comforts[i]);
+            individuals[id] = individual;
+            alive[id >>> 6] |= 1L << id;
+            individual.setId(id, generations[id]);
+        }
+        size = snapshot.ids.length;
+
+        isPathComplete = snapshot.pathComplete;
+        bestPathCost = snapshot.bestPathCost;
+        bestPathVersion = snapshot.bestPathVersion;
+        bestComfort = snapshot.bestComfort;
+        bestPathTail = snapshot.bestPathTail;
+        bestPathGridCells = grid.getN() * grid.getM();
+        bestIndividual = snapshot.bestId >= 0 ? individuals[snapshot.bestId] : null;
+        bestPath = bestPathTail != null ? new Path(bestPathTail, bestPathGridCells) : null;
+        bestPathReadVersion = bestPathVersion;
+
+        if (snapshot.fittest.length > EPIDEMIC_SURVIVORS || snapshot.sweepCursor < -1 || snapshot.sweepCursor >= capacity) {
+            throw new IllegalArgumentException("Invalid population snapshot: epidemic state");
+        }
+        survivorCount = snapshot.fittest.length;
+        System.arraycopy(snapshot.fittest, 0, fittest, 0, survivorCount);
+        System.arraycopy(snapshot.fittestGenerations, 0, fittestGenerations, 0, survivorCount);
+        sweepCursor = snapshot.sweepCursor;
+        random = new SplitMixRandom(snapshot.randomSeed, snapshot.randomGamma);
     }
 
     /**
@@ -243,17 +741,18 @@ public class Population {
     @Override
     public String toString() {
         return "Population{" +
-                "size=" + individuals.size() +
+                "size=" + size +
                 ", maxSize=" + maxSize +
+                ", epidemicPolicy=" + epidemicPolicy +
                 ", isPathComplete=" + isPathComplete +
                 ", bestPathCost=" + bestPathCost +
-                ", bestPath=" + bestPath +
+                ", bestPathVersion=" + bestPathVersion +
                 ", bestComfort=" + bestComfort +
                 ", k=" + k +
                 ", mu=" + mu +
                 ", delta=" + delta +
                 ", ro=" + ro +
-                ", individuals=" + individuals +
+                ", individuals=" + Arrays.toString(Arrays.stream(individuals).filter(i -> i != null).toArray()) +
                 "}";
     }
 
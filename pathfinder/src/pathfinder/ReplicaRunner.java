@@ -0,0 +1,217 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs independent replicas of a simulation in parallel and aggregates their outcomes.
+ *
+ * Every replica has its own population, PEC and random source, and they all share
+ * the grid, which is only read, so replicas never synchronize while running. The
+ * seeds of the replicas are drawn from the options in replica order, so with a seed each
+ * replica follows the same trajectory whatever thread runs it. Replicas
+ * are split in halves over a fork-join pool with one worker per core. Each replica
+ * builds its simulator when it starts and keeps only its result once it finishes,
+ * so memory grows with the number of workers, not of replicas, and the results
+ * are compared once all of them have finished.
+ */
+public class ReplicaRunner {
+
+    private Scenario scenario;
+    private SimulatorOptions[] options; // Options of each replica
+    private SimulationResult[] results;
+    private int parallelism;
+    private long wallTime; // Nanoseconds taken by the last run
+
+    /**
+     * Constructs a runner for the replicas of a scenario.
+     *
+     * @param scenario The grid and population parameters, shared by every replica
+     * @param options  Engine options, including the number of replicas
+     */
+    public ReplicaRunner(Scenario scenario, SimulatorOptions options)
+    {
+        this.scenario = scenario;
+        this.options = new SimulatorOptions[options.getReplicas()];
+        for (int i = 0; i < this.options.length; i++) {
+            this.options[i] = options.split();
+        }
+        parallelism = Math.min(this.options.length, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Fork-join task running a range of replicas.
+     */
+    private class ReplicaTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        /**
+         * Constructs a task for the replicas in [from, to).
+         *
+         * @param from First replica
+         * @param to   Replica after the last one
+         */
+        ReplicaTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = new Simulator(scenario, options[from]).simulate();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ReplicaTask(from, mid), new ReplicaTask(mid, to));
+        }
+    }
+
+    /**
+     * Runs every replica to the end, in parallel.
+     *
+     * @return The outcome of each replica, in replica order
+     */
+    public SimulationResult[] run()
+    {
+        results = new SimulationResult[options.length];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new ReplicaTask(0, options.length));
+        } finally {
+            pool.shutdown();
+        }
+        wallTime = System.nanoTime() - start;
+        return results;
+    }
+
+    /**
+     * Returns the best outcome among the replicas of the last run.
+     *
+     * @return The best result
+     */
+    public SimulationResult getBest()
+    {
+        SimulationResult best = results[0];
+        for (SimulationResult result : results) {
+            if (result.isBetterThan(best)) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Prints the configuration of the simulation, which all replicas share.
+     */
+    public void printConfig()
+    {
+        OutputSink output = OutputSink.standardOutput();
+        output.writeConfig(scenario.getGrid(), scenario.getTau(), scenario.getV(), scenario.getVmax(), scenario.getK(),
+                scenario.getMu(), scenario.getDelta(), scenario.getRo());
+        output.flush();
+    }
+
+    /**
+     * Prints the aggregated outcome of the last run: how many replicas hit the final point,
+     * statistics of their best path costs and first hit times, and the best path overall.
+     */
+    public void printSummary()
+    {
+        long events = 0;
+        int hits = 0;
+        for (SimulationResult result : results) {
+            events += result.getEvents();
+            if (result.isPathComplete()) hits++;
+        }
+
+        double[] costs = new double[hits];
+        double[] hitTimes = new double[hits];
+        for (int i = 0, j = 0; i < results.length; i++) {
+            if (results[i].isPathComplete()) {
+                costs[j] = results[i].getBestPathCost();
+                hitTimes[j] = results[i].getFirstHitTime();
+                j++;
+            }
+        }
+
+        SimulationResult best = getBest();
+        boolean isCost = best.isPathComplete();
+        String bestPathString = best.getBestPath() == null ? "[]" : best.getBestPath().toString(scenario.getGrid());
+        double seconds = wallTime / 1e9;
+
+        String output =
+            "Replicas:\t\t\t" + results.length + "\n\t\t" +
+                    "Worker threads:\t\t\t" + parallelism + "\n\t\t" +
+                    "Wall time:\t\t\t" + String.format(Locale.ROOT, "%.3f s", seconds) + "\n\t\t" +
+                    "Realized events:\t\t" + events + String.format(Locale.ROOT, " (%.0f per second)", events / seconds) + "\n\t\t" +
+                    "Final point has been hit:\t" + hits + " of " + results.length + "\n\t\t" +
+                    "Best path cost:\t\t\t" + describe(costs) + "\n\t\t" +
+                    "First hit time:\t\t\t" + describe(hitTimes) + "\n\n" +
+            "Best fit individual:\t" + bestPathString + " " +
+            "with " + (isCost ? "cost" : "comfort") + ": " + (isCost ? best.getBestPathCost() : best.getBestComfort()) + "\n";
+
+        System.out.println(output);
+    }
+
+    /**
+     * Describes a sample by its mean, minimum, median, 90th percentile and maximum.
+     *
+     * @param values The sample, reordered by this method
+     * @return Description of the sample, or "-" if it is empty
+     */
+    private static String describe(double[] values)
+    {
+        if (values.length == 0) return "-";
+
+        Arrays.sort(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return String.format(Locale.ROOT, "mean %.2f, min %.2f, p50 %.2f, p90 %.2f, max %.2f", sum / values.length, values[0],
+                percentile(values, 0.5), percentile(values, 0.9), values[values.length - 1]);
+    }
+
+    /**
+     * Returns a percentile of a sorted sample, by the nearest-rank method.
+     *
+     * @param sorted The sample, in ascending order
+     * @param p      Percentile, in (0, 1]
+     * @return The value at that percentile
+     */
+    private static double percentile(double[] sorted, double p)
+    {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Returns a string representation of the runner.
+     *
+     * @return String describing the runner
+     */
+    @Override
+    public String toString()
+    {
+        return "ReplicaRunner{" +
+                "replicas=" + options.length +
+                ", parallelism=" + parallelism +
+                ", wallTime=" + wallTime +
+                '}';
+    }
+}
@@ -27,6 +27,16 @@ public class Reproduction extends Event {
         super(time, individual, pec);
     }
 
+    /**
+     * Returns the type code of reproduction events.
+     *
+     * @return Event.REPRODUCTION
+     */
+    @Override
+    byte getType() {
+        return REPRODUCTION;
+    }
+
     /**
      * Executes the reproduction event.
      * If the individual is alive, it creates a child and schedules
@@ -35,17 +45,27 @@ public class Reproduction extends Event {
      */
     @Override
     public void execute() {
-        // Implementation of the reproduction event logic
+        run(time, individual, pec);
+    }
+
+    /**
+     * Reproduction event logic, shared by event objects and the PEC event store.
+     *
+     * @param time       The time at which the event occurs.
+     * @param individual The individual involved in the event.
+     * @param pec        The event controller managing the simulation events.
+     */
+    static void run(double time, Individual individual, Pec pec) {
         if (individual.isAlive()) {
             Individual child = individual.reproduce();
 
             // Schedule the next reproduction event for the parent
-            pec.addEvent(new Reproduction(individual.getMoveTime() + time, individual, pec));
+            pec.schedule(REPRODUCTION, individual.getMoveTime() + time, individual);
 
             // Schedule the child's move, death, and reproduction events
-            pec.addEvent(new Move(child.getMoveTime() + time, child, pec));
-            pec.addEvent(new Death(child.getDeathTime() + time, child, pec));
-            pec.addEvent(new Reproduction(child.getReproductionTime() + time, child, pec));
+            pec.schedule(MOVE, child.getMoveTime() + time, child);
+            pec.schedule(DEATH, child.getDeathTime() + time, child);
+            pec.schedule(REPRODUCTION, child.getReproductionTime() + time, child);
         }
     }
 
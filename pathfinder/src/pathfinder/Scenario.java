@@ -0,0 +1,125 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+/**
+ * The input of a simulation: the grid and the parameters of the population.
+ * A scenario is only read, so any number of simulations can share it.
+ */
+public class Scenario {
+
+    private final Grid grid;
+    private final int tau, v, vmax, k, mu, delta, ro;
+
+    /**
+     * Constructs a scenario.
+     *
+     * @param grid  The grid
+     * @param tau   Simulation time
+     * @param v     Initial population size
+     * @param vmax  Maximum population size
+     * @param k     Reproduction parameter
+     * @param mu    Mutation rate
+     * @param delta Death rate
+     * @param ro    Comfort parameter
+     */
+    public Scenario(Grid grid, int tau, int v, int vmax, int k, int mu, int delta, int ro) {
+        this.grid = grid;
+        this.tau = tau;
+        this.v = v;
+        this.vmax = vmax;
+        this.k = k;
+        this.mu = mu;
+        this.delta = delta;
+        this.ro = ro;
+    }
+
+    /**
+     * Gets the grid.
+     * @return The grid
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Gets the simulation time.
+     * @return tau
+     */
+    public int getTau() {
+        return tau;
+    }
+
+    /**
+     * Gets the initial population size.
+     * @return v
+     */
+    public int getV() {
+        return v;
+    }
+
+    /**
+     * Gets the maximum population size.
+     * @return vmax
+     */
+    public int getVmax() {
+        return vmax;
+    }
+
+    /**
+     * Gets the reproduction parameter.
+     * @return k
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Gets the mutation rate.
+     * @return mu
+     */
+    public int getMu() {
+        return mu;
+    }
+
+    /**
+     * Gets the death rate.
+     * @return delta
+     */
+    public int getDelta() {
+        return delta;
+    }
+
+    /**
+     * Gets the comfort parameter.
+     * @return ro
+     */
+    public int getRo() {
+        return ro;
+    }
+
+    /**
+     * Returns a string representation of the scenario.
+     * @return String describing the scenario
+     */
+    @Override
+    public String toString() {
+        return "Scenario{" +
+                "grid=" + grid +
+                ", tau=" + tau +
+                ", v=" + v +
+                ", vmax=" + vmax +
+                ", k=" + k +
+                ", mu=" + mu +
+                ", delta=" + delta +
+                ", ro=" + ro +
+                '}';
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a scenario file, or a checkpoint, is malformed, with the position of the
+ * offending token in a text file, or of the offending value in a binary file.
+ */
+public class ScenarioFormatException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String file;
+    private final int line;
+    private final int column;
+    private final long offset;
+
+    /**
+     * Constructs an exception for a malformed token.
+     *
+     * @param file   Name of the scenario file
+     * @param line   Line of the token, from 1
+     * @param column Column of the token, from 1
+     * @param detail What is wrong
+     */
+    public ScenarioFormatException(String file, int line, int column, String detail) {
+        super(file + ":" + line + ":" + column + ": " + detail);
+        this.file = file;
+        this.line = line;
+        this.column = column;
+        this.offset = -1;
+    }
+
+    /**
+     * Constructs an exception for a malformed value of a binary file.
+     *
+     * @param file   Name of the scenario file
+     * @param offset Offset of the value in the file, in bytes
+     * @param detail What is wrong
+     */
+    public ScenarioFormatException(String file, long offset, String detail) {
+        super(file + ": byte " + offset + ": " + detail);
+        this.file = file;
+        this.line = 0;
+        this.column = 0;
+        this.offset = offset;
+    }
+
+    /**
+     * Constructs an exception for a file that is inconsistent as a whole, rather than at one value.
+     *
+     * @param file   Name of the file
+     * @param detail What is wrong
+     */
+    public ScenarioFormatException(String file, String detail) {
+        super(file + ": " + detail);
+        this.file = file;
+        this.line = 0;
+        this.column = 0;
+        this.offset = -1;
+    }
+
+    /**
+     * Gets the name of the scenario file.
+     * @return File name
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the line of the offending token.
+     * @return Line, from 1, or 0 for a binary file
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Gets the column of the offending token.
+     * @return Column, from 1, or 0 for a binary file
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Gets the offset of the offending value in a binary file.
+     * @return Offset in bytes, or -1 for a text file or a whole-file error
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads a scenario file, in the binary format of BinaryScenario, recognized by its
+ * magic number, or in the text format:
+ *
+ *   n m xi yi xf yf n_scz n_obs tau v vmax k mu delta ro
+ *   Special Cost Zones:
+ *   x1 y1 x2 y2 cost      (n_scz lines)
+ *   Obstacles:
+ *   x y                   (n_obs lines)
+ *
+ * The file is memory-mapped and read byte by byte by a tokenizer that parses integers
+ * in place, so no String is built per token. Zones and obstacles are streamed into a
+ * Grid.Builder as they are read. The two section labels are optional, and any amount
+ * of whitespace may separate the values. Malformed files are reported with the line
+ * and column of the offending token.
+ */
+public class ScenarioLoader {
+
+    // Size of the mapped window; larger files are mapped one window at a time
+    private static final long WINDOW_SIZE = 1L << 30;
+    // Longest text of a malformed token quoted in an error
+    private static final int MAX_QUOTED = 32;
+
+    private final String name;
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    // Position of the next byte, from 1
+    private int line = 1;
+    private int column = 1;
+    // Position of the last token read
+    private int tokenLine;
+    private int tokenColumn;
+
+    /**
+     * Prepares to read a text scenario file.
+     *
+     * @param file    Path of the file
+     * @param channel Channel of the file
+     * @throws IOException if the file cannot be mapped
+     */
+    private ScenarioLoader(String file, FileChannel channel) throws IOException {
+        this.name = file;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.windowStart = 0;
+        this.window = map(0);
+    }
+
+    /**
+     * Loads a scenario file, in either format.
+     *
+     * @param file Path of the file
+     * @return The scenario
+     * @throws ScenarioFormatException if the file is malformed
+     * @throws IOException if the file cannot be read
+     */
+    public static Scenario load(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            if (BinaryScenario.isBinary(channel)) {
+                return BinaryScenario.read(file, channel);
+            }
+            return new ScenarioLoader(file, channel).parse();
+        }
+    }
+
+    /**
+     * Checks whether a scenario file is in the binary format.
+     *
+     * @param file Path of the file
+     * @return true if the file is binary, false if it is text
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isBinary(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            return BinaryScenario.isBinary(channel);
+        }
+    }
+
+    /**
+     * Parses the whole file.
+     *
+     * @return The scenario
+     * @throws IOException if the file is malformed or cannot be read
+     */
+    private Scenario parse() throws IOException {
+        int n = readInt("the number of rows");
+        check(n >= 1, "the number of rows must be at least 1");
+        int m = readInt("the number of columns");
+        check(m >= 1, "the number of columns must be at least 1");
+        check((long) n * m <= Integer.MAX_VALUE, "a grid of " + n + " x " + m + " cells is too large");
+        int xi = readCoordinate("the start x-coordinate", n);
+        int yi = readCoordinate("the start y-coordinate", m);
+        int xf = readCoordinate("the end x-coordinate", n);
+        int yf = readCoordinate("the end y-coordinate", m);
+        int zoneCount = readInt("the number of special cost zones");
+        check(zoneCount >= 0, "the number of special cost zones cannot be negative");
+        int obstacleCount = readInt("the number of obstacles");
+        check(obstacleCount >= 0, "the number of obstacles cannot be negative");
+        int tau = readInt("tau");
+        int v = readInt("v");
+        int vmax = readInt("vmax");
+        int k = readInt("k");
+        int mu = readInt("mu");
+        int delta = readInt("delta");
+        int ro = readInt("ro");
+
+        Grid.Builder builder = new Grid.Builder(n, m, xi, yi, xf, yf);
+        skipLabel();
+        for (int i = 0; i < zoneCount; i++) {
+            builder.addZone(readInt("a special cost zone x-coordinate"), readInt("a special cost zone y-coordinate"),
+                    readInt("a special cost zone x-coordinate"), readInt("a special cost zone y-coordinate"),
+                    readInt("a special cost zone cost"));
+        }
+        skipLabel();
+        for (int i = 0; i < obstacleCount; i++) {
+            builder.addObstacle(readInt("an obstacle x-coordinate"), readInt("an obstacle y-coordinate"));
+        }
+
+        return new Scenario(builder.build(), tau, v, vmax, k, mu, delta, ro);
+    }
+
+    /**
+     * Reads a coordinate, which must be inside the grid.
+     *
+     * @param what  Description of the value, for errors
+     * @param limit Largest valid coordinate
+     * @return The coordinate
+     * @throws IOException if the value is malformed or outside the grid
+     */
+    private int readCoordinate(String what, int limit) throws IOException {
+        int value = readInt(what);
+        check(value >= 1 && value <= limit, what + " " + value + " is outside the grid, 1 to " + limit);
+        return value;
+    }
+
+    /**
+     * Reads an integer, skipping the whitespace before it.
+     *
+     * @param what Description of the value, for errors
+     * @return The integer
+     * @throws IOException if the next token is not an integer or the file ended
+     */
+    private int readInt(String what) throws IOException {
+        skipWhitespace();
+        tokenLine = line;
+        tokenColumn = column;
+
+        int b = peek();
+        if (b < 0) {
+            throw error("unexpected end of file, expected " + what);
+        }
+        long tokenStart = position();
+        boolean negative = b == '-';
+        if (b == '-' || b == '+') {
+            advance();
+            b = peek();
+        }
+        if (b < '0' || b > '9') {
+            throw error("expected " + what + ", found '" + quote(tokenStart) + "'");
+        }
+
+        long value = 0;
+        do {
+            value = value * 10 + (b - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw error(quote(tokenStart) + " is out of the integer range");
+            }
+            advance();
+            b = peek();
+        } while (b >= '0' && b <= '9');
+
+        if (b >= 0 && !isWhitespace(b)) {
+            throw error("expected " + what + ", found '" + quote(tokenStart) + "'");
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            throw error(quote(tokenStart) + " is out of the integer range");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Skips a section label, a line starting with a letter, if it is next.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private void skipLabel() throws IOException {
+        skipWhitespace();
+        int b = peek();
+        if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z')) {
+            while (b >= 0 && b != '\n') {
+                advance();
+                b = peek();
+            }
+        }
+    }
+
+    /**
+     * Skips spaces, tabs and line breaks.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private void skipWhitespace() throws IOException {
+        int b;
+        while ((b = peek()) >= 0 && isWhitespace(b)) {
+            advance();
+        }
+    }
+
+    /**
+     * Checks whether a byte is whitespace.
+     *
+     * @param b The byte
+     * @return true for spaces, tabs and line breaks
+     */
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    /**
+     * Returns the next byte without consuming it.
+     *
+     * @return The byte, or -1 at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    private int peek() throws IOException {
+        if (!window.hasRemaining()) {
+            long next = windowStart + window.capacity();
+            if (next >= fileSize) return -1;
+            windowStart = next;
+            window = map(next);
+        }
+        return window.get(window.position()) & 0xFF;
+    }
+
+    /**
+     * Consumes the next byte, which peek() returned, keeping track of the line and column.
+     */
+    private void advance() {
+        if (window.get() == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+    }
+
+    /**
+     * Gets the offset of the next byte in the file.
+     *
+     * @return The offset
+     */
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    /**
+     * Maps a window of the file.
+     *
+     * @param start Offset of the window
+     * @return The mapped window
+     * @throws IOException if the file cannot be mapped
+     */
+    private MappedByteBuffer map(long start) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+    }
+
+    /**
+     * Returns the text of a token, for an error message, reading it again from the file.
+     *
+     * @param start Offset of the token
+     * @return The token, cut after MAX_QUOTED bytes
+     * @throws IOException if the file cannot be read
+     */
+    private String quote(long start) throws IOException {
+        StringBuilder text = new StringBuilder();
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAX_QUOTED + 1, fileSize - start));
+        while (bytes.hasRemaining() && text.length() < MAX_QUOTED) {
+            int b = bytes.get() & 0xFF;
+            if (isWhitespace(b)) break;
+            text.append((char) b);
+        }
+        if (bytes.hasRemaining() && text.length() == MAX_QUOTED && !isWhitespace(bytes.get() & 0xFF)) {
+            text.append("...");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Throws an error at the last token if a condition does not hold.
+     *
+     * @param condition The condition
+     * @param detail    What is wrong otherwise
+     * @throws ScenarioFormatException if the condition is false
+     */
+    private void check(boolean condition, String detail) throws ScenarioFormatException {
+        if (!condition) {
+            throw error(detail);
+        }
+    }
+
+    /**
+     * Creates an error at the last token.
+     *
+     * @param detail What is wrong
+     * @return The exception
+     */
+    private ScenarioFormatException error(String detail) {
+        return new ScenarioFormatException(name, tokenLine, tokenColumn, detail);
+    }
+}
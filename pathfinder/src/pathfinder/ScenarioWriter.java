@@ -0,0 +1,72 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Writes scenario files, in the text format ScenarioLoader reads or in the binary format
+ * of BinaryScenario, so scenarios can be converted from one format to the other.
+ */
+public class ScenarioWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ScenarioWriter() {
+    }
+
+    /**
+     * Writes a scenario in the text format.
+     *
+     * @param scenario The scenario
+     * @param file     Path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeText(Scenario scenario, String file) throws IOException {
+        Grid grid = scenario.getGrid();
+        int[] start = grid.getStartCoordinates(), end = grid.getEndCoordinates();
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.US_ASCII)) {
+            out.write(grid.getN() + " " + grid.getM() + " " + start[0] + " " + start[1] + " " + end[0] + " " + end[1] + " " +
+                    grid.getZoneCount() + " " + grid.getObstacleCount() + " " + scenario.getTau() + " " +
+                    scenario.getV() + " " + scenario.getVmax() + " " + scenario.getK() + " " +
+                    scenario.getMu() + " " + scenario.getDelta() + " " + scenario.getRo() + "\n");
+            out.write("Special Cost Zones:\n");
+            for (int zone = 0; zone < grid.getZoneCount(); zone++) {
+                out.write(grid.getZoneValue(zone, 0) + " " + grid.getZoneValue(zone, 1) + " " + grid.getZoneValue(zone, 2) + " " +
+                        grid.getZoneValue(zone, 3) + " " + grid.getZoneValue(zone, 4) + "\n");
+            }
+            out.write("Obstacles:\n");
+            for (int i = 0; i < grid.getObstacleCount(); i++) {
+                out.write(grid.getObstacleX(i) + " " + grid.getObstacleY(i) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes a scenario in the binary format.
+     *
+     * @param scenario   The scenario
+     * @param file       Path of the file
+     * @param rasterized Whether to also store the obstacle bitset and the cost lattice,
+     *                   so loading skips building them
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeBinary(Scenario scenario, String file, boolean rasterized) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(file)), BUFFER_SIZE))) {
+            BinaryScenario.write(scenario, out, rasterized);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+/**
+ * Outcome of a finished simulation: the best path it found and when it first
+ * reached the final point. Used to compare and aggregate independent runs.
+ */
+public class SimulationResult {
+
+    private final boolean pathComplete;
+    private final int bestPathCost;
+    private final double bestComfort;
+    private final Path bestPath;
+    private final double firstHitTime;
+    private final int events;
+
+    /**
+     * Constructs a simulation result.
+     * @param pathComplete Whether the final point was hit
+     * @param bestPathCost Cost of the best path
+     * @param bestComfort Best comfort reached
+     * @param bestPath The best path, or null if none was recorded
+     * @param firstHitTime Time the final point was first hit, -1 if it never was
+     * @param events Number of realized events
+     */
+    SimulationResult(boolean pathComplete, int bestPathCost, double bestComfort, Path bestPath, double firstHitTime, int events) {
+        this.pathComplete = pathComplete;
+        this.bestPathCost = bestPathCost;
+        this.bestComfort = bestComfort;
+        this.bestPath = bestPath;
+        this.firstHitTime = firstHitTime;
+        this.events = events;
+    }
+
+    /**
+     * Checks if the final point was hit.
+     * @return True if a complete path was found
+     */
+    public boolean isPathComplete() {
+        return pathComplete;
+    }
+
+    /**
+     * Gets the cost of the best path.
+     * @return Best path cost
+     */
+    public int getBestPathCost() {
+        return bestPathCost;
+    }
+
+    /**
+     * Gets the best comfort reached.
+     * @return Best comfort value
+     */
+    public double getBestComfort() {
+        return bestComfort;
+    }
+
+    /**
+     * Gets the best path.
+     * @return The best path, or null if none was recorded
+     */
+    public Path getBestPath() {
+        return bestPath;
+    }
+
+    /**
+     * Gets the time the final point was first hit.
+     * @return First hit time, -1 if the final point was never hit
+     */
+    public double getFirstHitTime() {
+        return firstHitTime;
+    }
+
+    /**
+     * Gets the number of realized events.
+     * @return Event count
+     */
+    public int getEvents() {
+        return events;
+    }
+
+    /**
+     * Checks if this result is better than another: a complete path beats an
+     * incomplete one, complete paths compare by cost and incomplete ones by comfort.
+     * @param other The result to compare with
+     * @return True if this result is strictly better
+     */
+    public boolean isBetterThan(SimulationResult other) {
+        if (pathComplete != other.pathComplete) return pathComplete;
+        return pathComplete ? bestPathCost < other.bestPathCost : bestComfort > other.bestComfort;
+    }
+
+    /**
+     * Returns a string representation of the result.
+     * @return String describing the result
+     */
+    @Override
+    public String toString() {
+        return "SimulationResult{" +
+                "pathComplete=" + pathComplete +
+                ", bestPathCost=" + bestPathCost +
+                ", bestComfort=" + bestComfort +
+                ", firstHitTime=" + firstHitTime +
+                ", events=" + events +
+                '}';
+    }
+}
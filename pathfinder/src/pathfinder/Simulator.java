@@ -9,7 +9,9 @@
 
 package pathfinder;
 
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
 
 /**
  * Simulator class
@@ -18,10 +20,23 @@ import java.util.stream.Collectors;
  * reproduction, and death, and outputs simulation progress and results.
  */
 public class Simulator {
+    private Scenario scenario;
     private Grid grid;
+    private Pec.QueueType queueType;
     private Pec pec;
     private Population population;
+    private EventWindow window; // Parallel executor of PEC events, null when they run one at a time
     private int observation;
+    private double firstHitTime; // Time the final point was first hit, -1 until then
+    private Consumer<Simulator> observationListener; // Called at every observation
+    private Metrics metrics; // Engine metrics, null when disabled
+    private String metricsFile; // File the metrics are dumped to
+    private OutputSink output; // Where the output goes, the standard output if not set
+    private String checkpointFile; // File checkpoints are written to, null when disabled
+    private int checkpointInterval; // Observations between checkpoints
+    private Thread checkpointWriter; // Thread writing the last checkpoint, null when none is in progress
+    private IOException checkpointFailure; // Why the last checkpoint could not be written
+    private boolean resumed; // Whether the simulation continues from a checkpoint
 
     /**
      * Constructs a Simulator instance.
@@ -46,98 +61,421 @@ public class Simulator {
      */
     public Simulator(int n, int m, int xi, int yi, int xf, int yf, int[][] scz, int[][] obs, int tau, int v, int vmax, int k, int mu, int delta, int ro)
     {
-        // Initialize the grid, pec, and individuals
-        grid = new Grid(xi, yi, xf, yf, n, m, scz, obs);
-        pec = new Pec(tau);
-        population = new Population(vmax, k, mu, delta, ro);
+        this(n, m, xi, yi, xf, yf, scz, obs, tau, v, vmax, k, mu, delta, ro, new SimulatorOptions());
+    }
+
+    /**
+     * Constructs a Simulator instance with the given engine options.
+     *
+     * @param n       Number of rows in the grid
+     * @param m       Number of columns in the grid
+     * @param xi      Start X coordinate
+     * @param yi      Start Y coordinate
+     * @param xf      End X coordinate
+     * @param yf      End Y coordinate
+     * @param scz     Special cost zones
+     * @param obs     Obstacles
+     * @param tau     Observation interval
+     * @param v       Initial population size
+     * @param vmax    Maximum population size
+     * @param k       Reproduction parameter
+     * @param mu      Mutation rate
+     * @param delta   Death rate
+     * @param ro      Comfort parameter
+     * @param options Engine options
+     */
+    public Simulator(int n, int m, int xi, int yi, int xf, int yf, int[][] scz, int[][] obs, int tau, int v, int vmax, int k, int mu, int delta, int ro,
+                     SimulatorOptions options)
+    {
+        this(new Grid(xi, yi, xf, yf, n, m, scz, obs), tau, v, vmax, k, mu, delta, ro, options);
+    }
+
+    /**
+     * Constructs a Simulator instance for a scenario.
+     * The scenario is only read, so independent simulators can share it.
+     *
+     * @param scenario The grid and population parameters
+     * @param options  Engine options
+     */
+    public Simulator(Scenario scenario, SimulatorOptions options)
+    {
+        this(scenario.getGrid(), scenario.getTau(), scenario.getV(), scenario.getVmax(), scenario.getK(), scenario.getMu(),
+                scenario.getDelta(), scenario.getRo(), options);
+    }
+
+    /**
+     * Constructs a Simulator instance on an existing grid.
+     * The grid is only read, so independent simulators can share it.
+     * The simulator splits its random source off the options.
+     *
+     * @param grid    The grid
+     * @param tau     Observation interval
+     * @param v       Initial population size
+     * @param vmax    Maximum population size
+     * @param k       Reproduction parameter
+     * @param mu      Mutation rate
+     * @param delta   Death rate
+     * @param ro      Comfort parameter
+     * @param options Engine options
+     */
+    Simulator(Grid grid, int tau, int v, int vmax, int k, int mu, int delta, int ro, SimulatorOptions options)
+    {
+        this(new Scenario(grid, tau, v, vmax, k, mu, delta, ro), options.getQueueType(), options.getEpidemicPolicy(), options);
+
+        // Initialize the individuals
+        population.setRandom(options.splitRandom());
+        if (options.getWorkers() > 1) {
+            setWindow(new EventWindow(population, tau, options.getWorkers(), options));
+        }
         for (int i = 0; i < v; i++) {
             Individual individual = new Individual(population, grid);
             population.addIndividual(individual);
-            pec.addEvent(new Move(individual.getMoveTime(), individual, pec));
-            pec.addEvent(new Reproduction(individual.getReproductionTime(), individual, pec));
-            pec.addEvent(new Death(individual.getDeathTime(), individual, pec));
+            pec.schedule(Event.MOVE, individual.getMoveTime(), individual);
+            pec.schedule(Event.REPRODUCTION, individual.getReproductionTime(), individual);
+            pec.schedule(Event.DEATH, individual.getDeathTime(), individual);
         }
+    }
+
+    /**
+     * Constructs a Simulator instance with an empty pec and population.
+     *
+     * @param scenario       The grid and population parameters
+     * @param queueType      Event queue implementation
+     * @param epidemicPolicy Epidemic policy of the population
+     * @param options        Engine options, for the metrics and checkpoints
+     */
+    private Simulator(Scenario scenario, Pec.QueueType queueType, EpidemicPolicy epidemicPolicy, SimulatorOptions options)
+    {
+        this.scenario = scenario;
+        this.grid = scenario.getGrid();
+        this.queueType = queueType;
+        pec = new Pec(scenario.getTau(), queueType);
+        population = new Population(scenario.getVmax(), scenario.getK(), scenario.getMu(), scenario.getDelta(), scenario.getRo());
+        population.setRemovalListener(pec::cancel);
+        population.setEpidemicPolicy(epidemicPolicy);
+        metricsFile = options.getMetricsFile();
+        if (metricsFile != null) {
+            metrics = new Metrics(pec, population);
+            pec.setMetrics(metrics);
+            population.setMetrics(metrics);
+        }
+        checkpointFile = options.getCheckpointFile();
+        checkpointInterval = options.getCheckpointInterval();
 
         observation = 0;
+        firstHitTime = -1;
+        observationListener = simulator -> {};
+    }
+
+    /**
+     * Resumes a simulation from a checkpoint, in the state it was in when the checkpoint was taken.
+     * The queue type, epidemic policy and random sources are the saved ones; only the metrics,
+     * output and checkpoint options apply. Run, it continues from the next observation and
+     * follows the trajectory the checkpointed simulation would have.
+     *
+     * @param file    The checkpoint file
+     * @param options Engine options
+     * @return The simulator
+     * @throws ScenarioFormatException if the checkpoint is malformed or inconsistent
+     * @throws IOException if the checkpoint cannot be read
+     */
+    public static Simulator resume(String file, SimulatorOptions options) throws IOException
+    {
+        Checkpoint checkpoint = Checkpoint.read(file);
+        Simulator simulator = new Simulator(checkpoint.scenario, checkpoint.queueType, checkpoint.epidemicPolicy, options);
+        try {
+            simulator.population.restore(checkpoint.population, simulator.grid);
+            simulator.pec.restore(checkpoint.pec, simulator.population);
+        } catch (IllegalArgumentException e) {
+            throw new ScenarioFormatException(file, e.getMessage());
+        }
+        if (checkpoint.windowRandoms.length > 0) {
+            simulator.setWindow(new EventWindow(simulator.population, checkpoint.scenario.getTau(), checkpoint.windowRandoms));
+        }
+        simulator.observation = checkpoint.observation;
+        simulator.firstHitTime = checkpoint.firstHitTime;
+        simulator.resumed = true;
+        return simulator;
+    }
+
+    /**
+     * Runs windows of concurrent PEC events in parallel.
+     *
+     * @param window The window executor
+     */
+    private void setWindow(EventWindow window)
+    {
+        this.window = window;
+        window.setMetrics(metrics);
+        pec.setWindow(window);
     }
 
     /**
      * Runs the simulation.
      * Processes events until completion, outputting intermediate and final results.
+     * With metrics enabled, they are registered with JMX for the length of the run
+     * and dumped at every observation. With checkpoints enabled, one is taken every
+     * checkpoint interval observations. A resumed simulation starts at the observation
+     * after its checkpoint. The worker threads of event windows are stopped when it ends.
+     *
+     * @throws java.io.UncheckedIOException if the output, the metrics file or a checkpoint cannot be written
+     * @throws IllegalStateException if the metrics cannot be registered with JMX
      */
     public void run()
     {
-        int result;
-        outputMidRun();
-        observation++;
-        while ((result = pec.next()) != -1) {
-            if (result == 1) {
+        MetricsDump dump = null;
+        try {
+            if (metrics != null) {
+                dump = new MetricsDump(metricsFile);
+                metrics.register(metricsFile);
+                metrics.start();
+            }
+
+            int result;
+            if (!resumed) {
                 outputMidRun();
+                dumpMetrics(dump);
                 observation++;
             }
+            while ((result = step()) != -1) {
+                if (result == 1) {
+                    outputMidRun();
+                    dumpMetrics(dump);
+                    observation++;
+                    if (checkpointFile != null && (observation - 1) % checkpointInterval == 0) {
+                        checkpoint();
+                    }
+                }
+            }
+            outputMidRun();
+            dumpMetrics(dump);
+            outputResults();
+            output().flush();
+            awaitCheckpoint();
+        } finally {
+            if (window != null) {
+                window.shutdown();
+            }
+            if (dump != null) {
+                metrics.unregister();
+                dump.close();
+            }
         }
-        outputMidRun();
-        outputResults();
     }
 
     /**
-     * Outputs the current state of the simulation at each observation interval.
+     * Takes the metrics at the current observation and dumps them.
+     *
+     * @param dump The dump, null if metrics are disabled
      */
-    private void outputMidRun() {
-        boolean isCost = population.isPathComplete();
-        String bestPathString = population.getBestPath().stream()
-            .map(coord -> "(" + coord[0] + ", " + coord[1] + ")")
-            .collect(Collectors.joining(", ", "[", "]"));
+    private void dumpMetrics(MetricsDump dump)
+    {
+        if (dump == null) return;
+        metrics.observe(observation);
+        dump.write(metrics);
+    }
 
-        String output =
-            "Observation " + observation + ":\n\t\t" +
-                    "Present time:\t\t\t" + pec.getTime() + "\n\t\t" +
-                    "Number of realized events:\t" + pec.getEventsCount() + "\n\t\t" +
-                    "Population size:\t\t" + population.getSize() + "\n\t\t" +
-                    "Final point has been hit:\t" + (isCost ? "yes" : "no") + "\n\t\t" +
-                    "Path of the best fit:\t\t" + bestPathString + "\n\t\t" +
-                    "Best path cost:\t\t\t" + (isCost ? population.getBestPathCost() : population.getBestComfort()) + "\n\t\t";
+    /**
+     * Takes a checkpoint, waiting for the previous one to be written first.
+     * The state is captured on this thread, and written on another while the simulation goes on.
+     *
+     * @throws UncheckedIOException if the previous checkpoint could not be written
+     */
+    private void checkpoint()
+    {
+        awaitCheckpoint();
+        Checkpoint checkpoint = new Checkpoint(scenario, population.getEpidemicPolicy(), queueType, observation, firstHitTime,
+                pec.snapshot(), population.snapshot(), window != null ? window.snapshotRandoms() : new SplitMixRandom[0]);
+        checkpointWriter = new Thread(() -> {
+            try {
+                checkpoint.write(checkpointFile);
+            } catch (IOException e) {
+                checkpointFailure = e;
+            }
+        }, "checkpoint-writer");
+        checkpointWriter.start();
+    }
 
-        System.out.println(output);
+    /**
+     * Waits for the checkpoint being written, if any.
+     *
+     * @throws UncheckedIOException if it could not be written
+     * @throws IllegalStateException if the wait was interrupted
+     */
+    private void awaitCheckpoint()
+    {
+        if (checkpointWriter == null) return;
+        try {
+            checkpointWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing a checkpoint", e);
+        }
+        checkpointWriter = null;
+        if (checkpointFailure != null) {
+            throw new UncheckedIOException("Unable to write checkpoint " + checkpointFile, checkpointFailure);
+        }
     }
 
     /**
-     * Outputs the final results of the simulation.
+     * Runs the simulation without any output, stopping the worker threads of event windows when it ends.
+     *
+     * @return The outcome of the simulation
      */
-    private void outputResults()
+    public SimulationResult simulate()
     {
-        boolean isCost = population.isPathComplete();
-        String bestPathString = population.getBestPath().stream()
-            .map(coord -> "(" + coord[0] + ", " + coord[1] + ")")
-            .collect(Collectors.joining(", ", "[", "]"));
+        try {
+            while (step() != -1) {
+                // Observations are not reported
+            }
+        } finally {
+            if (window != null) {
+                window.shutdown();
+            }
+        }
+        return getResult();
+    }
 
-        String output =
-            "Best fit individual:\t" + bestPathString + " " +
-            "with " + (isCost ? "cost" : "comfort") + ": " + (isCost ? population.getBestPathCost() : population.getBestComfort()) + "\n";
+    /**
+     * Processes the next event or update, noting when the final point is first hit.
+     *
+     * @return 0 if an event was executed, 1 if an update occurred, -1 if no events remain
+     */
+    private int step()
+    {
+        int result = pec.next();
+        if (result == 0 && firstHitTime < 0 && population.isPathComplete()) {
+            firstHitTime = pec.getTime();
+        } else if (result == 1) {
+            observationListener.accept(this);
+        }
+        return result;
+    }
 
-        System.out.println(output);
+    /**
+     * Sets the listener called at every observation, between events.
+     *
+     * @param observationListener The listener
+     */
+    void setObservationListener(Consumer<Simulator> observationListener)
+    {
+        this.observationListener = observationListener;
     }
 
     /**
-     * Prints the current configuration of the simulation, including grid and population parameters.
+     * Adds an individual coming from another simulation to the population,
+     * scheduling its events from the current time.
+     *
+     * @param individual The individual, belonging to this simulation's population
      */
-    public void printConfig()
+    void immigrate(Individual individual)
     {
-        int[][] scz = grid.getScz();
-        int[][] obs = grid.getObs();
-        System.out.printf("%d %d %d %d %d %d %d %d %d %d %d %d %d %d %d\n", grid.getN(), grid.getM(), grid.getStartCoordinates()[0], grid.getStartCoordinates()[1],
-                                                grid.getEndCoordinates()[0], grid.getEndCoordinates()[1], scz.length, obs.length, pec.getTau(),
-                                                population.getSize(), population.getMaxSize(), population.getK(), population.getMu(), population.getDelta(), population.getRo());
-        System.out.println("Special Cost Zones:");
-        for (int[] zone : scz) {
-            System.out.printf("%d %d %d %d %d\n", zone[0], zone[1], zone[2], zone[3], zone[4]);
-        }
-        System.out.println("Obstacles:");
-        for (int[] obstacle : obs) {
-            System.out.printf("%d %d\n", obstacle[0], obstacle[1]);
+        population.addIndividual(individual);
+        double time = pec.getTime();
+        pec.schedule(Event.MOVE, time + individual.getMoveTime(), individual);
+        pec.schedule(Event.REPRODUCTION, time + individual.getReproductionTime(), individual);
+        pec.schedule(Event.DEATH, time + individual.getDeathTime(), individual);
+    }
+
+    /**
+     * Returns the engine metrics of the simulation.
+     *
+     * @return The metrics, or null if they are disabled
+     */
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Returns the population of the simulation.
+     *
+     * @return The population
+     */
+    Population getPopulation()
+    {
+        return population;
+    }
+
+    /**
+     * Returns the outcome of the simulation so far.
+     *
+     * @return Best path found, its cost or comfort, and the first hit time
+     */
+    public SimulationResult getResult()
+    {
+        return new SimulationResult(population.isPathComplete(), population.getBestPathCost(), population.getBestComfort(),
+                population.getBestPath(), firstHitTime, pec.getEventsCount());
+    }
+
+    /**
+     * Returns the grid of the simulation.
+     *
+     * @return The grid
+     */
+    public Grid getGrid()
+    {
+        return grid;
+    }
+
+    /**
+     * Sets where the output of the simulation goes.
+     *
+     * @param output The output sink
+     */
+    public void setOutput(OutputSink output)
+    {
+        this.output = output;
+    }
+
+    /**
+     * Returns where the output of the simulation goes, creating a sink on the standard output if none was set.
+     *
+     * @return The output sink
+     */
+    private OutputSink output()
+    {
+        if (output == null) {
+            output = OutputSink.standardOutput();
         }
+        return output;
+    }
+
+    /**
+     * Outputs the current state of the simulation at each observation interval.
+     */
+    private void outputMidRun() {
+        output().writeObservation(grid, observation, pec.getTime(), pec.getEventsCount(), population.getSize(),
+                population.isPathComplete(), population.getBestPath(), population.getBestPathCost(), population.getBestComfort());
+    }
 
-        System.out.print("\n\n");
+    /**
+     * Outputs the final results of the simulation.
+     */
+    private void outputResults()
+    {
+        output().writeResult(grid, population.isPathComplete(), population.getBestPath(), population.getBestPathCost(),
+                population.getBestComfort());
+    }
+
+    /**
+     * Prints the current configuration of the simulation, including grid and population parameters.
+     */
+    public void printConfig()
+    {
+        printConfig(scenario.getV(), scenario.getVmax());
+    }
 
+    /**
+     * Prints the configuration of the simulation with given population sizes,
+     * for simulations whose population is split among several simulators.
+     *
+     * @param v    Initial population size
+     * @param vmax Maximum population size
+     */
+    void printConfig(int v, int vmax)
+    {
+        output().writeConfig(grid, pec.getTau(), v, vmax, population.getK(), population.getMu(), population.getDelta(), population.getRo());
+        output().flush();
     }
 }
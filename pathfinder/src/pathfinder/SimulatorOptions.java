@@ -0,0 +1,312 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+/**
+ * Engine options of a simulation, which change how it runs but not the model it simulates.
+ * Every option has a default, so only the ones given on the command line need to be set.
+ */
+public class SimulatorOptions {
+
+    // Event queue implementation used by the PEC
+    private Pec.QueueType queueType;
+    // When and how epidemics run
+    private EpidemicPolicy epidemicPolicy;
+    // Number of independent simulations to run
+    private int replicas;
+    // Number of islands the population is split into, 1 for a single population
+    private int islands;
+    // Observations between migrations, and individuals each island sends per migration
+    private int migrationInterval;
+    private int migrants;
+    // Threads running windows of PEC events in parallel, 1 to run events one at a time
+    private int workers;
+    // Seed of every random source of a run, null for a random seed
+    private Long seed;
+    // Source the random sources of a run are split from, created from the seed on first use
+    private SplitMixRandom random;
+    // File the engine metrics are dumped to at every observation, null to disable metrics
+    private String metricsFile;
+    // Format of the output, and file it is written to, null for the standard output
+    private OutputSink.Format outputFormat;
+    private String outputFile;
+    // File a checkpoint is written to every checkpoint interval observations, null to disable checkpoints
+    private String checkpointFile;
+    private int checkpointInterval;
+
+    /**
+     * Constructs the default options.
+     */
+    public SimulatorOptions() {
+        queueType = Pec.QueueType.HEAP;
+        epidemicPolicy = EpidemicPolicy.EXACT;
+        replicas = 1;
+        islands = 1;
+        migrationInterval = 2;
+        migrants = 2;
+        workers = 1;
+        outputFormat = OutputSink.Format.TEXT;
+        checkpointInterval = 1;
+    }
+
+    /**
+     * Gets the event queue implementation.
+     * @return The queue type
+     */
+    public Pec.QueueType getQueueType() {
+        return queueType;
+    }
+
+    /**
+     * Sets the event queue implementation.
+     * @param queueType The queue type
+     */
+    public void setQueueType(Pec.QueueType queueType) {
+        this.queueType = queueType;
+    }
+
+    /**
+     * Gets the epidemic policy.
+     * @return The epidemic policy
+     */
+    public EpidemicPolicy getEpidemicPolicy() {
+        return epidemicPolicy;
+    }
+
+    /**
+     * Sets the epidemic policy.
+     * @param epidemicPolicy The epidemic policy
+     */
+    public void setEpidemicPolicy(EpidemicPolicy epidemicPolicy) {
+        this.epidemicPolicy = epidemicPolicy;
+    }
+
+    /**
+     * Gets the number of independent simulations to run.
+     * @return Replica count
+     */
+    public int getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Sets the number of independent simulations to run.
+     * @param replicas Replica count, at least 1
+     * @throws IllegalArgumentException if replicas is less than 1
+     */
+    public void setReplicas(int replicas) {
+        if (replicas < 1) {
+            throw new IllegalArgumentException("Invalid replica count: " + replicas);
+        }
+        this.replicas = replicas;
+    }
+
+    /**
+     * Gets the number of islands the population is split into.
+     * @return Island count, 1 for a single population
+     */
+    public int getIslands() {
+        return islands;
+    }
+
+    /**
+     * Gets the number of observations between migrations.
+     * @return Migration interval
+     */
+    public int getMigrationInterval() {
+        return migrationInterval;
+    }
+
+    /**
+     * Gets the number of individuals each island sends per migration.
+     * @return Migrant count
+     */
+    public int getMigrants() {
+        return migrants;
+    }
+
+    /**
+     * Sets how the population is split into islands and how they exchange individuals.
+     * @param islands Island count, at least 1
+     * @param migrationInterval Observations between migrations, at least 1
+     * @param migrants Individuals each island sends per migration, not negative
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public void setIslands(int islands, int migrationInterval, int migrants) {
+        if (islands < 1 || migrationInterval < 1 || migrants < 0) {
+            throw new IllegalArgumentException("Invalid island model: " + islands + ":" + migrationInterval + ":" + migrants);
+        }
+        this.islands = islands;
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+    }
+
+    /**
+     * Gets the number of threads running windows of PEC events in parallel.
+     * @return Worker count, 1 when events run one at a time
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets the number of threads running windows of PEC events in parallel.
+     * @param workers Worker count, 1 to run events one at a time
+     * @throws IllegalArgumentException if workers is less than 1
+     */
+    public void setWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Invalid worker count: " + workers);
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * Gets the seed of the random sources of a run.
+     * @return The seed, or null if runs are not reproducible
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the random sources of a run, so that runs with the same
+     * seed and options follow the same trajectory.
+     * @param seed The seed, or null for a random seed
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+        this.random = null;
+    }
+
+    /**
+     * Splits off a new random source, independent from every other one split off these options.
+     * With a seed, the n-th source split off is the same in every run.
+     * @return The random source
+     */
+    public SplitMixRandom splitRandom() {
+        if (random == null) {
+            random = seed == null ? new SplitMixRandom() : new SplitMixRandom(seed);
+        }
+        return random.split();
+    }
+
+    /**
+     * Creates the options of one of several independent runs: the same queue, epidemic policy
+     * and workers, seeded with the next number drawn from these options, so that with a seed
+     * the n-th run created follows the same trajectory in every batch.
+     * @return The options of the run
+     */
+    SimulatorOptions split() {
+        SimulatorOptions options = new SimulatorOptions();
+        options.setQueueType(queueType);
+        options.setEpidemicPolicy(epidemicPolicy);
+        options.setWorkers(workers);
+        options.setSeed(splitRandom().nextLong());
+        return options;
+    }
+
+    /**
+     * Gets the file the engine metrics are dumped to.
+     * @return The file, or null if metrics are disabled
+     */
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Enables the engine metrics: they are exposed through JMX and dumped to a file at every
+     * observation, as JSON Lines if the file name ends in .json or .jsonl, or as CSV otherwise.
+     * @param metricsFile The file, or null to disable metrics
+     */
+    public void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    /**
+     * Gets the format of the output.
+     * @return The output format
+     */
+    public OutputSink.Format getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Gets the file the output is written to.
+     * @return The file, or null for the standard output
+     */
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Sets the format of the output and where it is written.
+     * @param outputFormat The output format
+     * @param outputFile The file, or null for the standard output
+     */
+    public void setOutput(OutputSink.Format outputFormat, String outputFile) {
+        this.outputFormat = outputFormat;
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Gets the file checkpoints are written to.
+     * @return The file, or null if checkpoints are disabled
+     */
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Gets the number of observations between checkpoints.
+     * @return Checkpoint interval
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Enables checkpoints: the state of the simulation is written to a file every interval
+     * observations, each checkpoint replacing the previous one, so the simulation can be resumed.
+     * @param checkpointFile The file, or null to disable checkpoints
+     * @param checkpointInterval Observations between checkpoints, at least 1
+     * @throws IllegalArgumentException if checkpointInterval is less than 1
+     */
+    public void setCheckpoint(String checkpointFile, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Invalid checkpoint interval: " + checkpointInterval);
+        }
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Returns a string representation of the options.
+     * @return String describing the options
+     */
+    @Override
+    public String toString() {
+        return "SimulatorOptions{" +
+                "queueType=" + queueType +
+                ", epidemicPolicy=" + epidemicPolicy +
+                ", replicas=" + replicas +
+                ", islands=" + islands +
+                ", migrationInterval=" + migrationInterval +
+                ", migrants=" + migrants +
+                ", workers=" + workers +
+                ", seed=" + seed +
+                ", metricsFile=" + metricsFile +
+                ", outputFormat=" + outputFormat +
+                ", outputFile=" + outputFile +
+                ", checkpointFile=" + checkpointFile +
+                ", checkpointInterval=" + checkpointInterval +
+                '}';
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * SplitMix64 random source, drawing exactly the numbers java.util.SplittableRandom draws
+ * from the same seed, and splitting off the same sources, but whose state can be read
+ * and restored, so a checkpointed simulation resumes with the numbers it would have drawn.
+ *
+ * The state is a seed advanced by an odd gamma on every draw, which goes through a
+ * mixing function. Like SplittableRandom, only nextInt() and nextLong() are implemented;
+ * bounded ints and doubles come from the RandomGenerator defaults built on them.
+ */
+public final class SplitMixRandom implements RandomGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private final long gamma;
+
+    /**
+     * Constructs a random source from a seed, drawing what new SplittableRandom(seed) draws.
+     *
+     * @param seed The seed
+     */
+    public SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /**
+     * Constructs a random source from a random seed.
+     */
+    public SplitMixRandom() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructs a random source from its state.
+     *
+     * @param seed  Current seed
+     * @param gamma Increment of the seed, odd
+     */
+    SplitMixRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Splits off a new random source, as SplittableRandom.split() does.
+     *
+     * @return The new random source
+     */
+    public SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    @Override
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * Gets the current seed, the first half of the state.
+     *
+     * @return The seed
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the increment of the seed, the second half of the state.
+     *
+     * @return The gamma
+     */
+    long getGamma() {
+        return gamma;
+    }
+
+    /**
+     * Advances the seed.
+     *
+     * @return The new seed
+     */
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    /**
+     * Mixes a seed into 64 random bits.
+     *
+     * @param z The seed
+     * @return The bits
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Mixes a seed into 32 random bits.
+     *
+     * @param z The seed
+     * @return The bits
+     */
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Mixes a seed into the gamma of a split source: odd, and with enough bit transitions.
+     *
+     * @param z The seed
+     * @return The gamma
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+    /**
+     * Returns a string representation of the random source.
+     *
+     * @return String describing the state
+     */
+    @Override
+    public String toString() {
+        return "SplitMixRandom{" +
+                "seed=" + seed +
+                ", gamma=" + gamma +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import java.io.Writer;
+
+/**
+ * Output sink writing the human-readable report of a simulation.
+ */
+class TextOutputSink extends OutputSink {
+
+    // Record length past which a long configuration is written out in pieces
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+
+    /**
+     * Constructs a text sink.
+     * @param out The writer the report is written to
+     */
+    TextOutputSink(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void writeConfig(Grid grid, int tau, int v, int vmax, int k, int mu, int delta, int ro) {
+        record.append(grid.getN()).append(' ').append(grid.getM()).append(' ')
+                .append(grid.getStartCoordinates()[0]).append(' ').append(grid.getStartCoordinates()[1]).append(' ')
+                .append(grid.getEndCoordinates()[0]).append(' ').append(grid.getEndCoordinates()[1]).append(' ')
+                .append(grid.getZoneCount()).append(' ').append(grid.getObstacleCount()).append(' ').append(tau).append(' ')
+                .append(v).append(' ').append(vmax).append(' ').append(k).append(' ')
+                .append(mu).append(' ').append(delta).append(' ').append(ro).append('\n');
+        record.append("Special Cost Zones:\n");
+        for (int zone = 0; zone < grid.getZoneCount(); zone++) {
+            for (int field = 0; field < 5; field++) {
+                if (field > 0) record.append(' ');
+                record.append(grid.getZoneValue(zone, field));
+            }
+            record.append('\n');
+        }
+        record.append("Obstacles:\n");
+        for (int i = 0; i < grid.getObstacleCount(); i++) {
+            record.append(grid.getObstacleX(i)).append(' ').append(grid.getObstacleY(i)).append('\n');
+            if (record.length() >= FLUSH_THRESHOLD) emit();
+        }
+        record.append("\n\n");
+        emit();
+    }
+
+    @Override
+    public void writeObservation(Grid grid, int observation, double time, int events, int populationSize,
+                                 boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append("Observation ").append(observation).append(":\n\t\t")
+                .append("Present time:\t\t\t").append(time).append("\n\t\t")
+                .append("Number of realized events:\t").append(events).append("\n\t\t")
+                .append("Population size:\t\t").append(populationSize).append("\n\t\t")
+                .append("Final point has been hit:\t").append(pathComplete ? "yes" : "no").append("\n\t\t")
+                .append("Path of the best fit:\t\t");
+        appendPath(grid, bestPath);
+        record.append("\n\t\t").append("Best path cost:\t\t\t");
+        appendValue(pathComplete, bestPathCost, bestComfort);
+        record.append("\n\t\t\n");
+        emit();
+    }
+
+    @Override
+    public void writeResult(Grid grid, boolean pathComplete, Path bestPath, int bestPathCost, double bestComfort) {
+        record.append("Best fit individual:\t");
+        appendPath(grid, bestPath);
+        record.append(" with ").append(pathComplete ? "cost" : "comfort").append(": ");
+        appendValue(pathComplete, bestPathCost, bestComfort);
+        record.append("\n\n");
+        emit();
+    }
+
+    /**
+     * Appends a path, or [] if there is none.
+     * @param grid The grid
+     * @param path The path, or null
+     */
+    private void appendPath(Grid grid, Path path) {
+        if (path == null) {
+            record.append("[]");
+        } else {
+            path.appendTo(record, grid);
+        }
+    }
+
+    /**
+     * Appends the cost of a complete path, or the comfort of an incomplete one,
+     * both as doubles, as the report has always shown them.
+     * @param pathComplete Whether the path is complete
+     * @param bestPathCost Cost of the path
+     * @param bestComfort Comfort of the path
+     */
+    private void appendValue(boolean pathComplete, int bestPathCost, double bestComfort) {
+        record.append(pathComplete ? bestPathCost : bestComfort);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the error bounds of ComfortModel against the direct formulas, with Math.pow and
+ * Math.log, on seeded random samples: logarithms over the whole range of positive doubles
+ * and of comforts, and comforts and event times of random paths on random grids.
+ */
+class ComfortModelTest {
+
+    private static final long SEED = 42L;
+    private static final int SAMPLES = 20_000;
+    private static final int MAX_SIDE = 1000, MAX_CMAX = 10, MAX_K = 10, MAX_PARAM = 100;
+
+    /**
+     * Logarithms: uniform exponents over the normal range, then uniform comforts in (0, 1).
+     */
+    @Test
+    void logIsWithinItsBound() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        double error = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = i % 2 == 0
+                    ? Math.scalb(1 + random.nextDouble(), random.nextInt(Double.MIN_EXPONENT, Double.MAX_EXPONENT + 1))
+                    : random.nextDouble(Double.MIN_NORMAL, 1);
+            double expected = Math.log(x);
+            error = Math.max(error, Math.abs(ComfortModel.log(x) - expected) / Math.max(1, Math.abs(expected)));
+        }
+        assertWithin("log", error, ComfortModel.LOG_ERROR);
+    }
+
+    /**
+     * Comforts and event times of random paths, on grids with random sizes, costs and parameters.
+     * Event times are taken of the exact comfort, so only the logarithm differs.
+     */
+    @Test
+    void comfortAndEventTimesAreWithinTheirBounds() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        double comfortError = 0, timeError = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            int n = random.nextInt(1, MAX_SIDE + 1), m = random.nextInt(1, MAX_SIDE + 1);
+            int cmax = random.nextInt(1, MAX_CMAX + 1), k = random.nextInt(0, MAX_K + 1);
+            int mu = random.nextInt(1, MAX_PARAM + 1), delta = random.nextInt(1, MAX_PARAM + 1), ro = random.nextInt(1, MAX_PARAM + 1);
+            int xf = random.nextInt(1, n + 1), yf = random.nextInt(1, m + 1);
+            Grid grid = new Grid(1, 1, xf, yf, n, m, new int[][] {{1, 1, 1, 1, cmax}}, new int[0][]);
+            ComfortModel model = new ComfortModel(grid, k, mu, delta, ro);
+
+            int size = random.nextInt(1, Math.min(n * m, 100_000) + 1);
+            int cost = (size - 1) + random.nextInt((cmax - 1) * (size - 1) + 1);
+            int last = random.nextInt(n * m);
+            int dist = Math.abs(grid.getX(last) - xf) + Math.abs(grid.getY(last) - yf);
+
+            double expected = Math.pow(1 - ((cost - size + 2.0) / ((cmax - 1.0) * size + 3.0)), k) *
+                    Math.pow(1 - dist / (grid.getSize() + 1.0), k);
+            double comfort = model.comfort(cost, size, last);
+            if (expected > 0) {
+                comfortError = Math.max(comfortError, Math.abs(comfort - expected) / (expected * Math.max(1, k)));
+            }
+
+            if (expected > 0 && expected < 1) {
+                timeError = Math.max(timeError, relative(model.moveTime(expected), (1 - Math.log(expected)) * delta));
+                timeError = Math.max(timeError, relative(model.reproductionTime(expected), (1 - Math.log(expected)) * ro));
+                timeError = Math.max(timeError, relative(model.deathTime(expected), (1 - Math.log(1 - expected)) * mu));
+            }
+        }
+        assertWithin("comfort (per unit of k)", comfortError, ComfortModel.POW_RELATIVE_ERROR);
+        assertWithin("event times", timeError, ComfortModel.LOG_ERROR);
+    }
+
+    /**
+     * Returns the relative error of a value.
+     *
+     * @param actual   The value
+     * @param expected The exact value, not zero
+     * @return The relative error
+     */
+    private static double relative(double actual, double expected) {
+        return Math.abs(actual - expected) / Math.abs(expected);
+    }
+
+    /**
+     * Asserts that the largest error found is within its bound.
+     *
+     * @param name  Check name
+     * @param error Largest error found
+     * @param bound Error bound
+     */
+    private static void assertWithin(String name, double error, double bound) {
+        assertTrue(error <= bound, () -> String.format("%s: max error %.3e above bound %.3e", name, error, bound));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the costs read from the cost lattice against the special cost zones.
+ */
+class GridTest {
+
+    private static final int N = 300, M = 300;
+
+    @TempDir
+    File dir;
+
+    /**
+     * Zones with few distinct costs, with more than a short holds, and with more than a char holds.
+     */
+    @Test
+    void costsMatchTheZones() {
+        for (int distinct : new int[] {3, 40_000, Grid.MAX_COST_LEVELS + 10}) {
+            int[][] zones = zones(distinct);
+            Grid grid = new Grid(1, 1, N, M, N, M, zones, new int[0][]);
+            assertCostsMatch(grid, zones);
+            if (distinct > Grid.MAX_COST_LEVELS) {
+                assertNull(grid.getCostTiles());
+            } else {
+                assertNotNull(grid.getCostTiles());
+            }
+        }
+    }
+
+    /**
+     * Rasterized binary files keep char levels above the range of a short, and grids whose
+     * costs are not stored as levels are written without the raster and rebuilt on loading.
+     */
+    @Test
+    void rasterizedFilesKeepTheCosts() throws IOException {
+        for (int distinct : new int[] {40_000, Grid.MAX_COST_LEVELS + 10}) {
+            int[][] zones = zones(distinct);
+            Scenario scenario = new Scenario(new Grid(1, 1, N, M, N, M, zones, new int[0][]), 10, 1, 10, 1, 1, 1, 1);
+            String file = new File(dir, distinct + ".bin").getPath();
+            ScenarioWriter.writeBinary(scenario, file, true);
+            assertCostsMatch(ScenarioLoader.load(file).getGrid(), zones);
+        }
+    }
+
+    /**
+     * Builds zones with a number of distinct costs: single cells along the rows, each with its
+     * own cost, and a few large zones overlapping them.
+     *
+     * @param distinct Number of distinct costs above 1
+     * @return The zones
+     */
+    private static int[][] zones(int distinct) {
+        int[][] zones = new int[distinct + 3][];
+        for (int i = 0; i < distinct; i++) {
+            int x = i / M + 1, y = i % M + 1;
+            zones[i] = new int[] {x, y, x, y, 2 + 7 * i};
+        }
+        zones[distinct] = new int[] {5, 5, 200, 250, 50_000};
+        zones[distinct + 1] = new int[] {100, 1, 300, 300, 3};
+        zones[distinct + 2] = new int[] {250, 10, 280, 20, 1};
+        return zones;
+    }
+
+    /**
+     * Checks that every move costs the highest cost among the zones whose border holds its
+     * lower endpoint, or 1 if there is none.
+     *
+     * @param grid  The grid
+     * @param zones The zones of the grid
+     */
+    private static void assertCostsMatch(Grid grid, int[][] zones) {
+        int[][] expected = new int[N + 1][M + 1];
+        for (int[] row : expected) {
+            Arrays.fill(row, 1);
+        }
+        for (int[] zone : zones) {
+            for (int x = zone[0]; x <= zone[2]; x++) {
+                for (int y = zone[1]; y <= zone[3]; y++) {
+                    boolean border = x == zone[0] || x == zone[2] || y == zone[1] || y == zone[3];
+                    if (border) {
+                        expected[x][y] = Math.max(expected[x][y], zone[4]);
+                    }
+                }
+            }
+        }
+        for (int x = 1; x < N; x++) {
+            for (int y = 1; y < M; y++) {
+                assertEquals(expected[x][y], grid.getCost(x, y, x + 1, y), "cost at (" + x + ", " + y + ")");
+                assertEquals(expected[x][y], grid.getCost(x, y + 1, x, y), "cost at (" + x + ", " + y + ")");
+            }
+        }
+    }
+}
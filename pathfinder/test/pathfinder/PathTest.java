@@ -0,0 +1,71 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the revisit detection of paths, whose visited cells are shared between copies,
+ * against the cells each path actually holds.
+ */
+class PathTest {
+
+    private static final long SEED = 42L;
+
+    /**
+     * Random walks on small and large grids, with cycles cut as Individual cuts them,
+     * copies of prefixes taken as children are, and copies of the copies extended in turn.
+     */
+    @Test
+    void containsMatchesTheCellsOfSharedPaths() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int gridCells : new int[] {16, 4096, 100_000, 1 << 22}) {
+            ArrayList<Path> paths = new ArrayList<>();
+            paths.add(new Path(random.nextInt(gridCells), gridCells));
+            for (int step = 0; step < 20_000; step++) {
+                Path path = paths.get(random.nextInt(paths.size()));
+                // Mostly cells of a small window, so paths often cut cycles, and some anywhere on the grid
+                int cell = random.nextInt(8) == 0 ? random.nextInt(gridCells) : random.nextInt(Math.min(gridCells, 1024));
+
+                int index = path.indexOf(cell);
+                assertEquals(linearIndexOf(path, cell), index);
+                if (index >= 0) {
+                    path.truncate(index + 1);
+                } else {
+                    path.add(cell, 1);
+                }
+
+                if (random.nextInt(16) == 0 && paths.size() < 64) {
+                    paths.add(new Path(path, random.nextInt(path.size()) + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the position of a cell in a path by scanning its cells.
+     *
+     * @param path The path
+     * @param cell Cell index
+     * @return Position of the cell, or -1 if the path does not visit it
+     */
+    private static int linearIndexOf(Path path, int cell) {
+        int[] cells = path.toArray();
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == cell) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * POO - Instituto Superior Técnico
+ *
+ * Guilherme Dias
+ * Francisco Coelho
+ * João Oliveira
+ * Tiago Ferreira
+ */
+
+package pathfinder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that epidemics keep the population bounded.
+ */
+class PopulationTest {
+
+    private static final int VMAX = 200, BIRTHS = 100_000;
+
+    /**
+     * Individuals at the final point, with comfort 2/3: each birth of an incremental sweep
+     * of 2 ids culls 2/3 of an individual on average, fewer than it adds, so the sweep falls
+     * behind and the next epidemic has to finish it.
+     */
+    @Test
+    void incrementalEpidemicKeepsTheSizeAtMostOneAboveTheHighWatermark() {
+        Grid grid = new Grid(1, 1, 1, 1, 2, 2, new int[0][], new int[0][]);
+        Population population = new Population(VMAX, 1, 1, 1, 1);
+        population.setRandom(new SplitMixRandom(11));
+        EpidemicPolicy policy = EpidemicPolicy.parse("incremental:1.5:1:2");
+        population.setEpidemicPolicy(policy);
+
+        // The birth that starts a sweep only visits chunk ids, so it can leave the size one above high
+        int bound = policy.getHighWatermark(VMAX) + 1, largest = 0;
+        for (int i = 0; i < BIRTHS; i++) {
+            population.addIndividual(new Individual(population, grid));
+            largest = Math.max(largest, population.getSize());
+        }
+        assertTrue(largest <= bound, "Population grew to " + largest + ", above " + bound);
+    }
+}